@@ -0,0 +1,172 @@
+package com.github.xesam.android.views.tag;
+
+import android.app.Instrumentation;
+import android.os.Parcelable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+public class TagViewGroupTest {
+
+    @Test
+    public void moveKeepsChildOrder() {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                List<String> data = new ArrayList<>(Arrays.asList("a", "b", "c", "d", "e"));
+                TagViewGroup group = new TagViewGroup(instrumentation.getTargetContext());
+                TestAdapter adapter = new TestAdapter(data);
+                group.setAdapter(adapter);
+                layout(group);
+                assertChildren(group, data);
+
+                // 移到最前面
+                data.add(0, data.remove(3));
+                adapter.notifyItemMoved(3, 0);
+                assertChildren(group, data);
+                layout(group);
+                assertChildren(group, data);
+
+                // 移到最后面
+                data.add(data.remove(0));
+                adapter.notifyItemMoved(0, 4);
+                assertChildren(group, data);
+                layout(group);
+                assertChildren(group, data);
+            }
+        });
+    }
+
+    @Test
+    public void restoreReusesSavedLayout() {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                List<String> data = new ArrayList<>();
+                for (int i = 0; i < 30; i++) {
+                    data.add("tag " + i);
+                }
+                TagViewGroup group = new TagViewGroup(instrumentation.getTargetContext());
+                group.setAdapter(new StableAdapter(data));
+                layout(group);
+                Parcelable state = group.onSaveInstanceState();
+
+                TagViewGroup restored = new TagViewGroup(instrumentation.getTargetContext());
+                restored.setAdapter(new StableAdapter(data));
+                restored.onRestoreInstanceState(state);
+                final TagMetrics[] measureMetrics = new TagMetrics[1];
+                restored.setOnTagMetricsListener(new OnTagMetricsListener() {
+                    @Override
+                    public void onTagMetrics(TagViewGroup parent, TagMetrics metrics) {
+                        if (metrics.getPass() == TagMetrics.PASS_MEASURE) {
+                            measureMetrics[0] = metrics;
+                            assertEquals(0, metrics.getFlowedLineCount());
+                            assertEquals(0, metrics.getSizeCacheMissCount());
+                        }
+                    }
+                });
+                layout(restored);
+
+                assertEquals(group.getMeasuredHeight(), restored.getMeasuredHeight());
+                assertChildren(restored, data);
+                for (int i = 0; i < data.size(); i++) {
+                    assertEquals(group.getChildAt(i).getLeft(), restored.getChildAt(i).getLeft());
+                    assertEquals(group.getChildAt(i).getTop(), restored.getChildAt(i).getTop());
+                }
+                assertNotNull(measureMetrics[0]);
+            }
+        });
+    }
+
+    @Test
+    public void dataSetChangedRebindsByStableId() {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                List<String> data = new ArrayList<>(Arrays.asList("a", "b", "c", "d"));
+                TagViewGroup group = new TagViewGroup(instrumentation.getTargetContext());
+                StableAdapter adapter = new StableAdapter(data);
+                group.setAdapter(adapter);
+                layout(group);
+                View viewA = group.getChildAt(0);
+                View viewD = group.getChildAt(3);
+
+                data.remove("b");
+                data.add(0, data.remove(2));
+                adapter.notifyDataSetChanged();
+                assertChildren(group, data);
+                assertSame(viewD, group.getChildAt(0));
+                assertSame(viewA, group.getChildAt(1));
+                layout(group);
+                assertChildren(group, data);
+            }
+        });
+    }
+
+    private static void assertChildren(TagViewGroup group, List<String> data) {
+        assertEquals(data.size(), group.getChildCount());
+        for (int i = 0; i < data.size(); i++) {
+            View child = group.getChildAt(i);
+            assertEquals(i, ((TagViewGroup.LayoutParams) child.getLayoutParams()).position);
+            assertEquals(data.get(i), ((TextView) child).getText().toString());
+        }
+    }
+
+    private static void layout(TagViewGroup group) {
+        group.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        group.layout(0, 0, group.getMeasuredWidth(), group.getMeasuredHeight());
+    }
+
+    private static class TestAdapter extends ListTagAdapter<String> {
+        TestAdapter(List<String> items) {
+            super(items);
+        }
+
+        @Override
+        protected View getView(int position, ViewGroup parent) {
+            TextView textView = new TextView(parent.getContext());
+            textView.setText(getItem(position));
+            return textView;
+        }
+    }
+
+    private static class StableAdapter extends TestAdapter {
+        StableAdapter(List<String> items) {
+            super(items);
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return getItem(position).hashCode();
+        }
+
+        @Override
+        public boolean hasStableSizes() {
+            return true;
+        }
+    }
+}
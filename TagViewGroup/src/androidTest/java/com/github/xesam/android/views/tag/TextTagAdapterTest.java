@@ -0,0 +1,80 @@
+package com.github.xesam.android.views.tag;
+
+import android.app.Instrumentation;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class TextTagAdapterTest {
+
+    @Test
+    public void changedItemIsBoundWithNewText() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final List<String> data = new ArrayList<>(Arrays.asList("first", "second", "third"));
+        final TagViewGroup[] group = new TagViewGroup[1];
+        final TextTagAdapter<String> adapter = new TextTagAdapter<String>() {
+            @Override
+            public int getCount() {
+                return data.size();
+            }
+
+            @Override
+            public String getItem(int position) {
+                return data.get(position);
+            }
+        };
+        adapter.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                group[0] = new TagViewGroup(instrumentation.getTargetContext());
+                group[0].setAdapter(adapter);
+                adapter.precompute(group[0]);
+                layout(group[0]);
+            }
+        });
+        // 等待预计算结果回到主线程，已挂载的标签换上预计算的文字
+        instrumentation.waitForIdleSync();
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                layout(group[0]);
+                data.set(1, "changed");
+                adapter.notifyItemChanged(1);
+                assertEquals("first", ((TextView) group[0].getChildAt(0)).getText().toString());
+                assertEquals("changed", ((TextView) group[0].getChildAt(1)).getText().toString());
+
+                data.add(0, "inserted");
+                adapter.notifyItemInserted(0);
+                assertEquals("inserted", ((TextView) group[0].getChildAt(0)).getText().toString());
+                assertEquals("first", ((TextView) group[0].getChildAt(1)).getText().toString());
+            }
+        });
+    }
+
+    private static void layout(TagViewGroup group) {
+        group.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        group.layout(0, 0, group.getMeasuredWidth(), group.getMeasuredHeight());
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.xesam.android.views.tag;
+
+import java.util.Arrays;
+
+// 与 View 无关的流式换行计算，TagViewGroup 的测量和布局都委托给它
+// 输入每个标签的宽高、可用宽度、间距、最大行数以及"更多"视图的尺寸，
+// 输出每一行的起始标签、纵坐标和宽高，每个标签的横坐标以及可见标签数量
+// 只使用基本类型数组，可以在后台线程中提前计算列表项的高度，但同一个实例不能同时在多个线程中使用
+public class FlowLayoutEngine {
+
+    // 换行过程中按顺序确定标签尺寸，TagViewGroup 用它按需创建和测量标签
+    public interface ItemMeasurer {
+        // 读取指定位置的宽高之前调用，需要把尺寸写入传给 flow 的数组
+        void measureItem(int position);
+
+        // 最后一行中返回标签的估算宽度，用来在确定尺寸之前判断标签是否会被截断，返回 -1 表示无法估算
+        int estimateItemWidth(int position);
+    }
+
+    private int mMaxWidth = 0;
+    private int mHorizontalSpacing = 0;
+    private int mVerticalSpacing = 0;
+    private int mMaxLines = Integer.MAX_VALUE;
+
+    // 每个标签的横坐标，以及每一行的起始标签、纵坐标、宽度和高度
+    private int[] mItemLefts = new int[16];
+    private int[] mLineStarts = new int[4];
+    private int[] mLineTops = new int[4];
+    private int[] mLineWidths = new int[4];
+    private int[] mLineHeights = new int[4];
+    private int mLineCount = 0;
+    // 已经排布过的标签数量，以及是否因为超过最大行数而提前结束
+    private int mFlowEnd = 0;
+    private boolean mTruncated = false;
+    // 最近一次换行时开始重新计算的行
+    private int mFirstFlowedLine = 0;
+
+    // 放置"更多"视图之后的结果
+    private int mVisibleCount = 0;
+    private boolean mMoreViewShown = false;
+    private int mMoreViewLeft = 0;
+    private int mLastLineHeight = 0;
+    private int mContentWidth = 0;
+    private int mContentHeight = 0;
+
+    public void setMaxWidth(int maxWidth) {
+        mMaxWidth = maxWidth;
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public void setHorizontalSpacing(int horizontalSpacing) {
+        mHorizontalSpacing = horizontalSpacing;
+    }
+
+    public int getHorizontalSpacing() {
+        return mHorizontalSpacing;
+    }
+
+    // 垂直间距只影响行的纵坐标，已有的换行结果直接修正，不需要重新换行
+    public void setVerticalSpacing(int verticalSpacing) {
+        if (verticalSpacing == mVerticalSpacing) {
+            return;
+        }
+        mVerticalSpacing = verticalSpacing;
+        for (int line = 1; line < mLineCount; line++) {
+            mLineTops[line] = mLineTops[line - 1] + mLineHeights[line - 1] + verticalSpacing;
+        }
+        if (mLineCount > 0) {
+            mContentHeight = mLineTops[mLineCount - 1] + mLastLineHeight;
+        }
+    }
+
+    public int getVerticalSpacing() {
+        return mVerticalSpacing;
+    }
+
+    public void setMaxLines(int maxLines) {
+        mMaxLines = maxLines;
+    }
+
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    // 一次完成换行和"更多"视图的放置，moreWidth 小于 0 表示没有"更多"视图
+    public void compute(int[] widths, int[] heights, int itemCount, int moreWidth, int moreHeight) {
+        flow(0, widths, heights, itemCount, null);
+        placeMoreView(widths, heights, moreWidth, moreHeight);
+    }
+
+    // 从 fromPosition 所在的行开始重新换行，之前的行直接复用，直到所有标签排完或者超过最大行数
+    // measurer 为 null 时 widths 和 heights 中必须已经是所有标签的尺寸
+    public void flow(int fromPosition, int[] widths, int[] heights, int itemCount, ItemMeasurer measurer) {
+        if (itemCount == 0) {
+            clear();
+            return;
+        }
+        if (itemCount > mItemLefts.length) {
+            mItemLefts = Arrays.copyOf(mItemLefts, Math.max(itemCount, mItemLefts.length * 2));
+        }
+
+        int line = Math.min(findLineIndex(Math.min(fromPosition, mFlowEnd)), Math.max(mMaxLines - 1, 0));
+        int start = line == 0 ? 0 : mLineStarts[line];
+        int top = line == 0 ? 0 : mLineTops[line];
+        int lineWidth = 0;
+        int lineHeight = 0;
+        int end = itemCount;
+        boolean truncated = false;
+        mFirstFlowedLine = line;
+        beginLine(line, start, top);
+
+        for (int i = start; i < itemCount; i++) {
+            if (measurer != null && lineWidth > 0 && line + 1 >= mMaxLines) {
+                // 最后一行根据估算宽度已经可以确定会被截断的标签，不需要再确定尺寸
+                int estimatedWidth = measurer.estimateItemWidth(i);
+                if (estimatedWidth >= 0 && lineWidth + estimatedWidth > mMaxWidth) {
+                    mLineWidths[line] = lineWidth;
+                    mLineHeights[line] = lineHeight;
+                    truncated = true;
+                    end = i;
+                    break;
+                }
+            }
+
+            if (measurer != null) {
+                measurer.measureItem(i);
+            }
+            int childWidth = widths[i];
+            int childHeight = heights[i];
+
+            // 判断是否需要换行
+            if (lineWidth + childWidth > mMaxWidth && lineWidth > 0) {
+                mLineWidths[line] = lineWidth;
+                mLineHeights[line] = lineHeight;
+                if (line + 1 >= mMaxLines) {
+                    // 超过最大行数，当前及之后的标签不显示
+                    truncated = true;
+                    end = i;
+                    break;
+                }
+
+                // 换行
+                top += lineHeight + mVerticalSpacing;
+                line++;
+                beginLine(line, i, top);
+                lineWidth = 0;
+                lineHeight = 0;
+            }
+
+            // 更新当前行的宽度和高度
+            mItemLefts[i] = lineWidth + (lineWidth > 0 ? mHorizontalSpacing : 0);
+            lineWidth = mItemLefts[i] + childWidth;
+            lineHeight = Math.max(lineHeight, childHeight);
+        }
+
+        if (!truncated) {
+            mLineWidths[line] = lineWidth;
+            mLineHeights[line] = lineHeight;
+        }
+        mLineCount = line + 1;
+        mFlowEnd = end;
+        mTruncated = truncated;
+    }
+
+    // 按之前保存的每行起始标签和纵坐标直接重建换行结果，不再逐个判断换行，之后仍需调用 placeMoreView
+    // widths 和 heights 中必须是保存时的标签尺寸，lineStarts 和 lineTops 来自 getLineStart 和 getLineTop
+    public void restore(int[] lineStarts, int[] lineTops, int flowEnd, boolean truncated, int[] widths, int[] heights) {
+        clear();
+        int lineCount = lineStarts.length;
+        if (lineCount == 0 || flowEnd == 0) {
+            return;
+        }
+        if (flowEnd > mItemLefts.length) {
+            mItemLefts = Arrays.copyOf(mItemLefts, Math.max(flowEnd, mItemLefts.length * 2));
+        }
+        for (int line = 0; line < lineCount; line++) {
+            beginLine(line, lineStarts[line], lineTops[line]);
+            int end = line + 1 < lineCount ? lineStarts[line + 1] : flowEnd;
+            int lineWidth = 0;
+            int lineHeight = 0;
+            for (int i = lineStarts[line]; i < end; i++) {
+                mItemLefts[i] = lineWidth + (lineWidth > 0 ? mHorizontalSpacing : 0);
+                lineWidth = mItemLefts[i] + widths[i];
+                lineHeight = Math.max(lineHeight, heights[i]);
+            }
+            mLineWidths[line] = lineWidth;
+            mLineHeights[line] = lineHeight;
+        }
+        mLineCount = lineCount;
+        mFirstFlowedLine = lineCount;
+        mFlowEnd = flowEnd;
+        mTruncated = truncated;
+    }
+
+    // 被截断时尝试在最后一行放置"更多"视图，必要时从后往前隐藏标签腾出空间，moreWidth 小于 0 表示没有"更多"视图
+    public void placeMoreView(int[] widths, int[] heights, int moreWidth, int moreHeight) {
+        if (mLineCount == 0) {
+            mVisibleCount = 0;
+            mMoreViewShown = false;
+            mContentWidth = 0;
+            mContentHeight = 0;
+            return;
+        }
+
+        int lastLine = mLineCount - 1;
+        int lastLineStart = mLineStarts[lastLine];
+        int lastLineWidth = mLineWidths[lastLine];
+        int lastLineHeight = mLineHeights[lastLine];
+        int visibleCount = mFlowEnd;
+
+        boolean moreViewShown = false;
+        if (moreWidth >= 0 && mTruncated) {
+            // 检查"更多"视图是否能放在最后一行
+            if (lastLineWidth + (lastLineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth <= mMaxWidth) {
+                moreViewShown = true;
+            } else if (moreWidth <= mMaxWidth) {
+                // 已达到最大行数，从后往前隐藏普通标签，直到"更多"视图能放在最后一行
+                while (visibleCount > lastLineStart
+                        && lastLineWidth + (lastLineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth > mMaxWidth) {
+                    visibleCount--;
+                    lastLineWidth = visibleCount > lastLineStart ? mItemLefts[visibleCount] - mHorizontalSpacing : 0;
+                }
+                moreViewShown = true;
+            }
+
+            if (moreViewShown) {
+                mMoreViewLeft = lastLineWidth + (lastLineWidth > 0 ? mHorizontalSpacing : 0);
+                lastLineWidth = mMoreViewLeft + moreWidth;
+                lastLineHeight = moreHeight;
+                for (int i = lastLineStart; i < visibleCount; i++) {
+                    lastLineHeight = Math.max(lastLineHeight, heights[i]);
+                }
+            }
+        }
+
+        mVisibleCount = visibleCount;
+        mMoreViewShown = moreViewShown;
+        mLastLineHeight = lastLineHeight;
+
+        int contentWidth = lastLineWidth;
+        for (int line = 0; line < lastLine; line++) {
+            contentWidth = Math.max(contentWidth, mLineWidths[line]);
+        }
+        mContentWidth = contentWidth;
+        mContentHeight = mLineTops[lastLine] + lastLineHeight;
+    }
+
+    // 清空换行结果
+    public void clear() {
+        mLineCount = 0;
+        mFirstFlowedLine = 0;
+        mFlowEnd = 0;
+        mTruncated = false;
+        mVisibleCount = 0;
+        mMoreViewShown = false;
+        mContentWidth = 0;
+        mContentHeight = 0;
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    // 最近一次 flow 重新计算的行数，之前的行是直接复用的
+    public int getFlowedLineCount() {
+        return mLineCount - mFirstFlowedLine;
+    }
+
+    public int getLineStart(int line) {
+        return mLineStarts[line];
+    }
+
+    public int getLineTop(int line) {
+        return mLineTops[line];
+    }
+
+    public int getLineWidth(int line) {
+        return mLineWidths[line];
+    }
+
+    // 最后一行返回放置"更多"视图之后的行高
+    public int getLineHeight(int line) {
+        return line == mLineCount - 1 ? mLastLineHeight : mLineHeights[line];
+    }
+
+    public int getItemLeft(int position) {
+        return mItemLefts[position];
+    }
+
+    // 已经排布过的标签数量，被截断时小于标签总数
+    public int getFlowEnd() {
+        return mFlowEnd;
+    }
+
+    public boolean isTruncated() {
+        return mTruncated;
+    }
+
+    // 实际显示的标签数量，为"更多"视图腾出空间时比 getFlowEnd 少一个
+    public int getVisibleCount() {
+        return mVisibleCount;
+    }
+
+    public boolean isMoreViewShown() {
+        return mMoreViewShown;
+    }
+
+    public int getMoreViewLeft() {
+        return mMoreViewLeft;
+    }
+
+    public int getContentWidth() {
+        return mContentWidth;
+    }
+
+    public int getContentHeight() {
+        return mContentHeight;
+    }
+
+    // 查找包含指定标签的行，超出已排布范围时返回最后一行
+    public int findLineIndex(int position) {
+        int low = 0;
+        int high = mLineCount - 1;
+        if (high <= 0) {
+            return 0;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // 查找纵坐标 y 所在的行，y 在第一行之上时返回第一行
+    public int findLineAt(int y) {
+        int low = 0;
+        int high = mLineCount - 1;
+        if (high <= 0) {
+            return 0;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineTops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void beginLine(int line, int start, int top) {
+        if (line >= mLineStarts.length) {
+            int capacity = Math.max(line + 1, mLineStarts.length * 2);
+            mLineStarts = Arrays.copyOf(mLineStarts, capacity);
+            mLineTops = Arrays.copyOf(mLineTops, capacity);
+            mLineWidths = Arrays.copyOf(mLineWidths, capacity);
+            mLineHeights = Arrays.copyOf(mLineHeights, capacity);
+        }
+        mLineStarts[line] = start;
+        mLineTops[line] = top;
+    }
+}
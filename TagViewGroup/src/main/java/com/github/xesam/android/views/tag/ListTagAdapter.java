@@ -0,0 +1,120 @@
+package com.github.xesam.android.views.tag;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// 以 List 为数据源的适配器，数据变化时调用 setItems 即可复用适配器和已经创建的标签
+// 使用 submitList 时只更新发生变化的标签，提交后的列表不要再修改
+public abstract class ListTagAdapter<T> extends TagAdapter<T> {
+    private List<T> mItems;
+    // 设置后在后台计算差量，只在主线程中应用最后一次提交的结果
+    private Executor mDiffExecutor;
+    private Handler mMainHandler;
+    // 每次替换数据时递增，用于丢弃过期的差量结果
+    private int mGeneration = 0;
+    private final TagListDiff.ItemCallback<T> mItemCallback = new TagListDiff.ItemCallback<T>() {
+        @Override
+        public boolean areItemsTheSame(T oldItem, T newItem) {
+            return ListTagAdapter.this.areItemsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(T oldItem, T newItem) {
+            return ListTagAdapter.this.areContentsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public Object getItemKey(T item) {
+            return ListTagAdapter.this.getItemKey(item);
+        }
+    };
+
+    public ListTagAdapter() {
+        this(null);
+    }
+
+    public ListTagAdapter(List<T> items) {
+        mItems = items == null ? Collections.<T>emptyList() : items;
+    }
+
+    // 替换数据，已经挂载的标签会原地重新绑定
+    public void setItems(List<T> items) {
+        mGeneration++;
+        mItems = items == null ? Collections.<T>emptyList() : items;
+        notifyDataSetChanged();
+    }
+
+    // 替换数据，与旧数据比较后只通知插入、移除、移动和内容变化的标签
+    public void submitList(List<T> items) {
+        final List<T> newItems = items == null ? Collections.<T>emptyList() : items;
+        final List<T> oldItems = mItems;
+        if (newItems == oldItems) {
+            return;
+        }
+        final int generation = ++mGeneration;
+        if (mDiffExecutor == null) {
+            applyDiff(newItems, TagListDiff.calculate(oldItems, newItems, mItemCallback));
+            return;
+        }
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final TagListDiff diff = TagListDiff.calculate(oldItems, newItems, mItemCallback);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            applyDiff(newItems, diff);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyDiff(List<T> newItems, TagListDiff diff) {
+        mItems = newItems;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    // 设置计算差量的线程，比如 Executors.newSingleThreadExecutor()，为 null 时在调用线程中计算
+    public void setDiffExecutor(Executor executor) {
+        mDiffExecutor = executor;
+    }
+
+    // 是否是同一个数据，默认使用 equals 比较，数据有 id 时可以重写为比较 id
+    protected boolean areItemsTheSame(T oldItem, T newItem) {
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+
+    // 查找移动的数据时使用的 key，默认是数据本身；重写 areItemsTheSame 比较 id 时需要同时重写，返回 id
+    protected Object getItemKey(T item) {
+        return item;
+    }
+
+    // 同一个数据的内容是否相同，不同时重新绑定标签
+    protected boolean areContentsTheSame(T oldItem, T newItem) {
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+}
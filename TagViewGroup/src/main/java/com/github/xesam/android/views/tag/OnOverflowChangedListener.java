@@ -0,0 +1,7 @@
+package com.github.xesam.android.views.tag;
+
+// 显示的标签数量或者被隐藏的标签数量发生变化时回调，在布局结束后调用
+// 显示的标签总是数据中最前面的 visibleCount 个
+public interface OnOverflowChangedListener {
+    void onOverflowChanged(TagViewGroup parent, int visibleCount, int hiddenCount);
+}
@@ -0,0 +1,6 @@
+package com.github.xesam.android.views.tag;
+
+// 每次测量或布局结束后回调，在主线程中调用，不要在回调中请求重新布局
+public interface OnTagMetricsListener {
+    void onTagMetrics(TagViewGroup parent, TagMetrics metrics);
+}
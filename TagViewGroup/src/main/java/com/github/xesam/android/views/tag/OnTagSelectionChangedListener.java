@@ -0,0 +1,6 @@
+package com.github.xesam.android.views.tag;
+
+// 标签的选中状态发生变化时回调，单选模式下切换选中项会先回调原来的标签取消选中
+public interface OnTagSelectionChangedListener {
+    void onSelectionChanged(TagViewGroup parent, int position, boolean selected);
+}
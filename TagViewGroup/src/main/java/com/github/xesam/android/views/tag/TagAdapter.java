@@ -3,7 +3,12 @@ package com.github.xesam.android.views.tag;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.ArrayList;
+
 public abstract class TagAdapter<T> {
+    public static final long NO_ID = -1;
+
+    private final ArrayList<TagDataObserver> mObservers = new ArrayList<>();
 
     // 获取子视图数量
     public abstract int getCount();
@@ -11,11 +16,127 @@ public abstract class TagAdapter<T> {
     // 获取指定位置的数据
     public abstract T getItem(int position);
 
+    // 返回 true 表示 getItemId 对同一个数据总是返回相同且唯一的 id
+    // TagViewGroup 会按 id 保存和恢复选中状态与排布结果，整个数据集刷新后也按 id 保留选中状态
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    // 获取指定位置数据的 id，hasStableIds 返回 true 时需要重写
+    public long getItemId(int position) {
+        return NO_ID;
+    }
+
+    // 获取指定位置的视图类型，只有类型相同的视图才会互相复用
+    public int getItemViewType(int position) {
+        return 0;
+    }
+
     // 创建子视图
     protected abstract View getView(int position, ViewGroup parent);
 
+    // 创建或复用子视图，convertView 是回收池中同类型的旧视图（可能为 null）
+    // 重写此方法并把数据绑定到 convertView 上即可复用视图，默认总是创建新视图
+    protected View getView(int position, View convertView, ViewGroup parent) {
+        return getView(position, parent);
+    }
+
+    // 估算指定位置标签的宽度（比如文字宽度加上内边距），返回负数表示无法估算
+    // 提供估算值后，确定会被截断的标签不需要创建视图，虚拟化模式下也用它代替平均尺寸
+    protected int estimateItemWidth(int position, ViewGroup parent) {
+        return -1;
+    }
+
+    // 估算指定位置标签的高度，返回负数表示无法估算
+    protected int estimateItemHeight(int position, ViewGroup parent) {
+        return -1;
+    }
+
+    // 返回 true 表示标签尺寸只取决于位置而不会随数据刷新变化（比如固定尺寸的图标标签，或者刷新前后数据相同）
+    // 数据刷新时 TagViewGroup 会保留测量和换行缓存，重新绑定的标签按缓存的尺寸直接测量
+    public boolean hasStableSizes() {
+        return false;
+    }
+
+    // 把选中状态应用到标签视图上，默认使用 activated 状态，可以在背景的 selector 中使用 state_activated
+    // 只在 TagViewGroup 开启了选择模式时调用，只改变视图状态，不需要重新绑定数据
+    protected void onBindSelection(View view, int position, boolean selected) {
+        view.setActivated(selected);
+    }
+
     // 创建"更多"组件视图，可以返回 null 表示不显示"更多"组件
     protected View getMoreView(ViewGroup parent) {
         return null;
     }
-}
\ No newline at end of file
+
+    // 绑定"更多"组件，hiddenCount 是没有显示的标签数量（比如显示为 "+12"）
+    // 只在隐藏数量变化时调用，"更多"组件视图在数据刷新之间一直复用
+    protected void onBindMoreView(View moreView, int hiddenCount) {
+    }
+
+    public void registerDataObserver(TagDataObserver observer) {
+        if (!mObservers.contains(observer)) {
+            mObservers.add(observer);
+        }
+    }
+
+    public void unregisterDataObserver(TagDataObserver observer) {
+        mObservers.remove(observer);
+    }
+
+    // 数据变化时在通知任何观察者之前调用，用于让适配器自己的缓存先失效，观察者重新绑定时不会读到旧数据的结果
+    void onDataChanging() {
+    }
+
+    // 通知整个数据集发生变化
+    public final void notifyDataSetChanged() {
+        onDataChanging();
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onChanged();
+        }
+    }
+
+    // 通知指定位置的数据内容发生变化
+    public final void notifyItemChanged(int position) {
+        notifyItemRangeChanged(position, 1);
+    }
+
+    public final void notifyItemRangeChanged(int positionStart, int itemCount) {
+        onDataChanging();
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onItemRangeChanged(positionStart, itemCount);
+        }
+    }
+
+    // 通知在指定位置插入了数据
+    public final void notifyItemInserted(int position) {
+        notifyItemRangeInserted(position, 1);
+    }
+
+    public final void notifyItemRangeInserted(int positionStart, int itemCount) {
+        onDataChanging();
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onItemRangeInserted(positionStart, itemCount);
+        }
+    }
+
+    // 通知指定位置的数据被移除
+    public final void notifyItemRemoved(int position) {
+        notifyItemRangeRemoved(position, 1);
+    }
+
+    public final void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        onDataChanging();
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onItemRangeRemoved(positionStart, itemCount);
+        }
+    }
+
+    // 通知 fromPosition 位置的数据移动到了 toPosition 位置
+    public final void notifyItemMoved(int fromPosition, int toPosition) {
+        onDataChanging();
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            mObservers.get(i).onItemMoved(fromPosition, toPosition);
+        }
+    }
+}
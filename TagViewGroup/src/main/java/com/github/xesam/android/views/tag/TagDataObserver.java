@@ -0,0 +1,25 @@
+package com.github.xesam.android.views.tag;
+
+// TagAdapter 数据变化的观察者
+public abstract class TagDataObserver {
+
+    // 整个数据集发生变化
+    public void onChanged() {
+    }
+
+    // 从 positionStart 开始的 itemCount 个数据内容发生变化
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+    }
+
+    // 在 positionStart 位置插入了 itemCount 个数据
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+    }
+
+    // 从 positionStart 位置移除了 itemCount 个数据
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+    }
+
+    // fromPosition 位置的数据移动到了 toPosition 位置
+    public void onItemMoved(int fromPosition, int toPosition) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.xesam.android.views.tag;
+
+// TagLayoutPrecomputer 批量计算的结果，每组数据只保存几个整数，所有标签的尺寸连续保存在同一个数组中
+// 可以通过 TagViewGroup.setPrecomputedLayout 交给 TagViewGroup，跳过标签的测量
+public class TagLayoutCache {
+    private final int mMaxWidth;
+    private final int mHorizontalSpacing;
+    private final int mMaxLines;
+    // 第 i 组数据的标签尺寸保存在 mItemWidths/mItemHeights 的 [mOffsets[i], mOffsets[i + 1]) 范围内
+    private final int[] mOffsets;
+    private final int[] mItemWidths;
+    private final int[] mItemHeights;
+    private final int[] mWidths;
+    private final int[] mHeights;
+    private final int[] mVisibleCounts;
+
+    TagLayoutCache(int maxWidth, int horizontalSpacing, int maxLines, int[] offsets) {
+        int count = offsets.length - 1;
+        mMaxWidth = maxWidth;
+        mHorizontalSpacing = horizontalSpacing;
+        mMaxLines = maxLines;
+        mOffsets = offsets;
+        mItemWidths = new int[offsets[count]];
+        mItemHeights = new int[offsets[count]];
+        mWidths = new int[count];
+        mHeights = new int[count];
+        mVisibleCounts = new int[count];
+    }
+
+    // 数据的组数
+    public int getCount() {
+        return mWidths.length;
+    }
+
+    // 第 index 组数据的标签数量
+    public int getItemCount(int index) {
+        return mOffsets[index + 1] - mOffsets[index];
+    }
+
+    // 第 index 组数据排布后的内容宽度
+    public int getWidth(int index) {
+        return mWidths[index];
+    }
+
+    // 第 index 组数据排布后的内容高度
+    public int getHeight(int index) {
+        return mHeights[index];
+    }
+
+    // 第 index 组数据实际显示的标签数量
+    public int getVisibleCount(int index) {
+        return mVisibleCounts[index];
+    }
+
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public int getHorizontalSpacing() {
+        return mHorizontalSpacing;
+    }
+
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    // 预计算的标签尺寸只在数量和可用宽度都一致时有效
+    boolean matches(int index, int itemCount, int maxWidth) {
+        return index >= 0 && index < getCount() && getItemCount(index) == itemCount && mMaxWidth == maxWidth;
+    }
+
+    void copyItemSizes(int index, int[] widths, int[] heights) {
+        int offset = mOffsets[index];
+        int count = getItemCount(index);
+        System.arraycopy(mItemWidths, offset, widths, 0, count);
+        System.arraycopy(mItemHeights, offset, heights, 0, count);
+    }
+
+    void setItemSize(int index, int position, int width, int height) {
+        mItemWidths[mOffsets[index] + position] = width;
+        mItemHeights[mOffsets[index] + position] = height;
+    }
+
+    void setResult(int index, int width, int height, int visibleCount) {
+        mWidths[index] = width;
+        mHeights[index] = height;
+        mVisibleCounts[index] = visibleCount;
+    }
+}
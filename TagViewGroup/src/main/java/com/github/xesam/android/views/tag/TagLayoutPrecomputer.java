@@ -0,0 +1,145 @@
+package com.github.xesam.android.views.tag;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// 在绑定之前批量计算多组标签数据的排布结果，比如列表中每一行 TagViewGroup 的高度和可见标签数量
+// 设置 Executor 后按数据分段并行计算，比如 ForkJoinPool 或者自己的线程池；没有设置时在调用线程中计算
+// compute 会等待所有计算完成，不要在 UI 线程中调用
+public class TagLayoutPrecomputer {
+
+    // 测量单个标签的尺寸，会在多个线程中同时调用，需要线程安全（比如每个线程使用自己的 Paint）
+    public interface SizeMeasurer<T> {
+        int measureWidth(T item);
+
+        int measureHeight(T item);
+    }
+
+    private int mMaxWidth = 0;
+    private int mHorizontalSpacing = 0;
+    private int mVerticalSpacing = 0;
+    private int mMaxLines = Integer.MAX_VALUE;
+    private int mMoreViewWidth = -1;
+    private int mMoreViewHeight = 0;
+    private Executor mExecutor;
+    private int mParallelism = Runtime.getRuntime().availableProcessors();
+
+    // 标签可以使用的宽度，即 TagViewGroup 的宽度
+    public void setMaxWidth(int maxWidth) {
+        mMaxWidth = maxWidth;
+    }
+
+    public void setHorizontalSpacing(int horizontalSpacing) {
+        mHorizontalSpacing = horizontalSpacing;
+    }
+
+    public void setVerticalSpacing(int verticalSpacing) {
+        mVerticalSpacing = verticalSpacing;
+    }
+
+    public void setMaxLines(int maxLines) {
+        mMaxLines = maxLines;
+    }
+
+    // 设置"更多"视图的尺寸，宽度小于 0 表示没有"更多"视图
+    public void setMoreViewSize(int width, int height) {
+        mMoreViewWidth = width;
+        mMoreViewHeight = height;
+    }
+
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    // 并行计算的分段数量，默认等于 CPU 核数
+    public void setParallelism(int parallelism) {
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    public <T> TagLayoutCache compute(final List<? extends List<? extends T>> datasets, final SizeMeasurer<? super T> measurer)
+            throws InterruptedException {
+        int count = datasets.size();
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] = offsets[i] + datasets.get(i).size();
+        }
+        final TagLayoutCache cache = new TagLayoutCache(mMaxWidth, mHorizontalSpacing, mMaxLines, offsets);
+        if (count == 0) {
+            return cache;
+        }
+
+        if (mExecutor == null || mParallelism == 1 || count == 1) {
+            computeRange(datasets, measurer, cache, 0, count);
+            return cache;
+        }
+
+        int chunkCount = Math.min(count, mParallelism);
+        final CountDownLatch latch = new CountDownLatch(chunkCount);
+        final RuntimeException[] error = new RuntimeException[1];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            final int from = (int) ((long) count * chunk / chunkCount);
+            final int to = (int) ((long) count * (chunk + 1) / chunkCount);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        computeRange(datasets, measurer, cache, from, to);
+                    } catch (RuntimeException e) {
+                        synchronized (error) {
+                            if (error[0] == null) {
+                                error[0] = e;
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+            try {
+                mExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // 线程池已满或者已经关闭时在调用线程中计算这一段，保证每一段都会计数
+                task.run();
+            }
+        }
+        latch.await();
+        synchronized (error) {
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+        return cache;
+    }
+
+    // 计算 [from, to) 范围内的数据，每个分段使用自己的 FlowLayoutEngine 和临时数组
+    private <T> void computeRange(List<? extends List<? extends T>> datasets, SizeMeasurer<? super T> measurer,
+                                  TagLayoutCache cache, int from, int to) {
+        FlowLayoutEngine engine = new FlowLayoutEngine();
+        engine.setMaxWidth(mMaxWidth);
+        engine.setHorizontalSpacing(mHorizontalSpacing);
+        engine.setVerticalSpacing(mVerticalSpacing);
+        engine.setMaxLines(mMaxLines);
+        int[] widths = new int[16];
+        int[] heights = new int[16];
+
+        for (int index = from; index < to; index++) {
+            List<? extends T> items = datasets.get(index);
+            int itemCount = items.size();
+            if (itemCount > widths.length) {
+                widths = new int[Math.max(itemCount, widths.length * 2)];
+                heights = new int[widths.length];
+            }
+            for (int i = 0; i < itemCount; i++) {
+                T item = items.get(i);
+                // 与 TagViewGroup 测量标签时一样，标签宽度不超过可用宽度
+                widths[i] = Math.min(measurer.measureWidth(item), mMaxWidth);
+                heights[i] = measurer.measureHeight(item);
+                cache.setItemSize(index, i, widths[i], heights[i]);
+            }
+            engine.compute(widths, heights, itemCount, mMoreViewWidth, mMoreViewHeight);
+            cache.setResult(index, engine.getContentWidth(), engine.getContentHeight(), engine.getVisibleCount());
+        }
+    }
+}
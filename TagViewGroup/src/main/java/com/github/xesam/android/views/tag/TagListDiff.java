@@ -0,0 +1,426 @@
+package com.github.xesam.android.views.tag;
+
+import java.util.HashMap;
+import java.util.List;
+
+// 计算两个列表之间的最小编辑序列（线性空间的 Myers 差分算法），
+// 结果可以转换为标签的移除、移动、插入和内容变化通知，TagViewGroup 只处理受影响的标签
+// 只依赖列表数据，可以在后台线程中计算
+public class TagListDiff {
+
+    public abstract static class ItemCallback<T> {
+        // 是否是同一个数据（比如 id 相同），相同的数据会保留原来的标签视图
+        public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+        // 同一个数据的内容是否相同，不同时会重新绑定标签
+        public abstract boolean areContentsTheSame(T oldItem, T newItem);
+
+        // 查找移动的数据时用作散列的 key，areItemsTheSame 为 true 的两个数据必须返回相等的 key
+        // 默认返回数据本身（按 equals 比较），areItemsTheSame 比较 id 时应该返回 id，否则移动的数据会被当作移除再插入
+        public Object getItemKey(T item) {
+            return item;
+        }
+    }
+
+    // 旧位置对应的新位置，-1 表示被移除；新位置对应的旧位置，-1 表示新插入
+    private final int[] mOldToNew;
+    private final int[] mNewToOld;
+    // 不在最长公共子序列中、需要移动的旧位置
+    private final boolean[] mMoved;
+    // 内容发生变化的新位置
+    private final boolean[] mChanged;
+
+    private TagListDiff(int oldSize, int newSize) {
+        mOldToNew = new int[oldSize];
+        mNewToOld = new int[newSize];
+        mMoved = new boolean[oldSize];
+        mChanged = new boolean[newSize];
+    }
+
+    public static <T> TagListDiff calculate(List<? extends T> oldList, List<? extends T> newList,
+                                            ItemCallback<? super T> callback) {
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+        TagListDiff diff = new TagListDiff(oldSize, newSize);
+        for (int i = 0; i < oldSize; i++) {
+            diff.mOldToNew[i] = -1;
+        }
+        for (int i = 0; i < newSize; i++) {
+            diff.mNewToOld[i] = -1;
+        }
+
+        int max = oldSize + newSize + 1;
+        int[] forward = new int[max * 2 + 1];
+        int[] backward = new int[max * 2 + 1];
+        new Matcher<T>(oldList, newList, callback, diff, forward, backward).match(0, oldSize, 0, newSize);
+        diff.findMoves(oldList, newList, callback);
+
+        for (int j = 0; j < newSize; j++) {
+            int oldPosition = diff.mNewToOld[j];
+            if (oldPosition != -1 && !callback.areContentsTheSame(oldList.get(oldPosition), newList.get(j))) {
+                diff.mChanged[j] = true;
+            }
+        }
+        return diff;
+    }
+
+    // 被移除的数据和新插入的数据中相同的数据视为移动
+    // 被移除的旧位置按 key 分组，同一个 key 的位置用 next 串成链表，每个新插入的数据只和同一个 key 的旧数据比较
+    private <T> void findMoves(List<? extends T> oldList, List<? extends T> newList, ItemCallback<? super T> callback) {
+        HashMap<Object, Integer> heads = new HashMap<>();
+        int[] next = new int[mOldToNew.length];
+        for (int i = mOldToNew.length - 1; i >= 0; i--) {
+            if (mOldToNew[i] != -1) {
+                continue;
+            }
+            Integer head = heads.put(callback.getItemKey(oldList.get(i)), i);
+            next[i] = head == null ? -1 : head;
+        }
+        if (heads.isEmpty()) {
+            return;
+        }
+        for (int j = 0; j < mNewToOld.length; j++) {
+            if (mNewToOld[j] != -1) {
+                continue;
+            }
+            T newItem = newList.get(j);
+            Object key = callback.getItemKey(newItem);
+            Integer head = heads.get(key);
+            int previous = -1;
+            for (int i = head == null ? -1 : head; i != -1; previous = i, i = next[i]) {
+                if (!callback.areItemsTheSame(oldList.get(i), newItem)) {
+                    continue;
+                }
+                // 从链表中摘除已经匹配的旧位置
+                if (previous != -1) {
+                    next[previous] = next[i];
+                } else if (next[i] != -1) {
+                    heads.put(key, next[i]);
+                } else {
+                    heads.remove(key);
+                }
+                mOldToNew[i] = j;
+                mNewToOld[j] = i;
+                mMoved[i] = true;
+                break;
+            }
+        }
+    }
+
+    // 把差分结果通知给适配器，适配器的数据需要已经替换为新列表
+    public void dispatchUpdatesTo(final TagAdapter<?> adapter) {
+        dispatchUpdatesTo(new TagDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                adapter.notifyItemRangeChanged(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                adapter.notifyItemRangeInserted(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                adapter.notifyItemRangeRemoved(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemMoved(int fromPosition, int toPosition) {
+                adapter.notifyItemMoved(fromPosition, toPosition);
+            }
+        });
+    }
+
+    // 依次通知移除、移动、插入和内容变化，插入和内容变化使用的都是新列表中的位置
+    public void dispatchUpdatesTo(TagDataObserver observer) {
+        int oldSize = mOldToNew.length;
+        int newSize = mNewToOld.length;
+
+        // 从后往前移除，连续的位置合并为一次通知，前面的位置不受影响
+        int i = oldSize - 1;
+        while (i >= 0) {
+            if (mOldToNew[i] != -1) {
+                i--;
+                continue;
+            }
+            int end = i + 1;
+            while (i >= 0 && mOldToNew[i] == -1) {
+                i--;
+            }
+            observer.onItemRangeRemoved(i + 1, end - i - 1);
+        }
+
+        dispatchMoves(observer);
+
+        // 按新位置从前往后插入，插入位置之前的数据都已经是最终结果
+        int j = 0;
+        while (j < newSize) {
+            if (mNewToOld[j] != -1) {
+                j++;
+                continue;
+            }
+            int start = j;
+            while (j < newSize && mNewToOld[j] == -1) {
+                j++;
+            }
+            observer.onItemRangeInserted(start, j - start);
+        }
+
+        j = 0;
+        while (j < newSize) {
+            if (!mChanged[j]) {
+                j++;
+                continue;
+            }
+            int start = j;
+            while (j < newSize && mChanged[j]) {
+                j++;
+            }
+            observer.onItemRangeChanged(start, j - start);
+        }
+    }
+
+    // 公共子序列中的数据顺序已经正确，按新列表的顺序把需要移动的数据依次放到前一个数据之后
+    // 移动过程中列表的顺序可以映射到一组固定的槽位上：公共子序列中的数据把列表分成若干段，
+    // 每一段中先是已经移动到位的数据（按新顺序），再是还没有移动的数据（按旧顺序），
+    // 用树状数组统计槽位之前的数据个数即可得到当前位置，不需要维护列表本身
+    private void dispatchMoves(TagDataObserver observer) {
+        int oldSize = mOldToNew.length;
+        int newSize = mNewToOld.length;
+        int stableCount = 0;
+        int movedCount = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (mOldToNew[i] != -1) {
+                if (mMoved[i]) {
+                    movedCount++;
+                } else {
+                    stableCount++;
+                }
+            }
+        }
+        if (movedCount == 0) {
+            return;
+        }
+
+        // 每一段中移动到位的数据个数和还没有移动的数据个数，第 g 段位于第 g 个公共数据之前
+        int[] placedCounts = new int[stableCount + 1];
+        int[] waitingCounts = new int[stableCount + 1];
+        int segment = 0;
+        for (int j = 0; j < newSize; j++) {
+            int oldPosition = mNewToOld[j];
+            if (oldPosition == -1) {
+                continue;
+            }
+            if (mMoved[oldPosition]) {
+                placedCounts[segment]++;
+            } else {
+                segment++;
+            }
+        }
+        segment = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (mOldToNew[i] == -1) {
+                continue;
+            }
+            if (mMoved[i]) {
+                waitingCounts[segment]++;
+            } else {
+                segment++;
+            }
+        }
+        // 每一段第一个槽位的下标，之后依次是移动到位的数据、还没有移动的数据以及这一段之后的公共数据
+        int[] segmentStarts = new int[stableCount + 1];
+        for (int g = 1; g <= stableCount; g++) {
+            segmentStarts[g] = segmentStarts[g - 1] + placedCounts[g - 1] + waitingCounts[g - 1] + 1;
+        }
+
+        // 树状数组，下标从 1 开始
+        int[] tree = new int[stableCount + movedCount * 2 + 1];
+        int[] waitingSlots = new int[oldSize];
+        segment = 0;
+        int waitingIndex = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (mOldToNew[i] == -1) {
+                continue;
+            }
+            int slot;
+            if (mMoved[i]) {
+                slot = segmentStarts[segment] + placedCounts[segment] + waitingIndex++;
+                waitingSlots[i] = slot;
+            } else {
+                slot = segmentStarts[segment] + placedCounts[segment] + waitingCounts[segment];
+                segment++;
+                waitingIndex = 0;
+            }
+            update(tree, slot, 1);
+        }
+
+        segment = 0;
+        int placedIndex = 0;
+        for (int j = 0; j < newSize; j++) {
+            int oldPosition = mNewToOld[j];
+            if (oldPosition == -1) {
+                continue;
+            }
+            if (!mMoved[oldPosition]) {
+                segment++;
+                placedIndex = 0;
+                continue;
+            }
+            int waitingSlot = waitingSlots[oldPosition];
+            int from = countBefore(tree, waitingSlot);
+            update(tree, waitingSlot, -1);
+            int placedSlot = segmentStarts[segment] + placedIndex++;
+            int to = countBefore(tree, placedSlot);
+            update(tree, placedSlot, 1);
+            if (from != to) {
+                observer.onItemMoved(from, to);
+            }
+        }
+    }
+
+    private static void update(int[] tree, int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // 槽位 slot 之前有数据的槽位个数
+    private static int countBefore(int[] tree, int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    // 分治查找中间蛇形路径，记录所有相同数据的匹配位置
+    private static class Matcher<T> {
+        private final List<? extends T> mOldList;
+        private final List<? extends T> mNewList;
+        private final ItemCallback<? super T> mCallback;
+        private final TagListDiff mDiff;
+        // 正向和反向搜索在每条对角线上到达的最远横坐标，下标加上 mOffset 后使用
+        private final int[] mForward;
+        private final int[] mBackward;
+        private final int mOffset;
+        // 最近一次找到的中间路径：起点和终点
+        private int mSnakeStartX;
+        private int mSnakeStartY;
+        private int mSnakeEndX;
+        private int mSnakeEndY;
+
+        Matcher(List<? extends T> oldList, List<? extends T> newList, ItemCallback<? super T> callback,
+                TagListDiff diff, int[] forward, int[] backward) {
+            mOldList = oldList;
+            mNewList = newList;
+            mCallback = callback;
+            mDiff = diff;
+            mForward = forward;
+            mBackward = backward;
+            mOffset = forward.length / 2;
+        }
+
+        void match(int oldStart, int oldEnd, int newStart, int newEnd) {
+            // 去掉相同的前缀和后缀
+            while (oldStart < oldEnd && newStart < newEnd && same(oldStart, newStart)) {
+                record(oldStart++, newStart++);
+            }
+            while (oldStart < oldEnd && newStart < newEnd && same(oldEnd - 1, newEnd - 1)) {
+                record(--oldEnd, --newEnd);
+            }
+            if (oldStart == oldEnd || newStart == newEnd) {
+                return;
+            }
+
+            findMiddleSnake(oldStart, oldEnd, newStart, newEnd);
+            int startX = mSnakeStartX;
+            int startY = mSnakeStartY;
+            int endX = mSnakeEndX;
+            int endY = mSnakeEndY;
+            match(oldStart, startX, newStart, startY);
+            for (int x = startX, y = startY; x < endX; x++, y++) {
+                record(x, y);
+            }
+            match(endX, oldEnd, endY, newEnd);
+        }
+
+        private void findMiddleSnake(int oldStart, int oldEnd, int newStart, int newEnd) {
+            int n = oldEnd - oldStart;
+            int m = newEnd - newStart;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int maxD = (n + m + 1) / 2;
+            int[] forward = mForward;
+            int[] backward = mBackward;
+            int offset = mOffset;
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+
+            for (int d = 0; d <= maxD; d++) {
+                // 正向：从左上角出发，对角线 k = x - y
+                for (int k = -d; k <= d; k += 2) {
+                    int x;
+                    if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+                        x = forward[offset + k + 1];
+                    } else {
+                        x = forward[offset + k - 1] + 1;
+                    }
+                    int y = x - k;
+                    int startX = x;
+                    int startY = y;
+                    while (x < n && y < m && same(oldStart + x, newStart + y)) {
+                        x++;
+                        y++;
+                    }
+                    forward[offset + k] = x;
+                    int c = delta - k;
+                    if (odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= n) {
+                        setSnake(oldStart + startX, newStart + startY, oldStart + x, newStart + y);
+                        return;
+                    }
+                }
+                // 反向：从右下角出发，坐标为到终点的距离，对角线 c = x' - y'
+                for (int c = -d; c <= d; c += 2) {
+                    int x;
+                    if (c == -d || (c != d && backward[offset + c - 1] < backward[offset + c + 1])) {
+                        x = backward[offset + c + 1];
+                    } else {
+                        x = backward[offset + c - 1] + 1;
+                    }
+                    int y = x - c;
+                    int startX = x;
+                    int startY = y;
+                    while (x < n && y < m && same(oldEnd - x - 1, newEnd - y - 1)) {
+                        x++;
+                        y++;
+                    }
+                    backward[offset + c] = x;
+                    int k = delta - c;
+                    if (!odd && k >= -d && k <= d && forward[offset + k] + x >= n) {
+                        setSnake(oldEnd - x, newEnd - y, oldEnd - startX, newEnd - startY);
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("middle snake not found");
+        }
+
+        private void setSnake(int startX, int startY, int endX, int endY) {
+            mSnakeStartX = startX;
+            mSnakeStartY = startY;
+            mSnakeEndX = endX;
+            mSnakeEndY = endY;
+        }
+
+        private boolean same(int oldPosition, int newPosition) {
+            return mCallback.areItemsTheSame(mOldList.get(oldPosition), mNewList.get(newPosition));
+        }
+
+        private void record(int oldPosition, int newPosition) {
+            mDiff.mOldToNew[oldPosition] = newPosition;
+            mDiff.mNewToOld[newPosition] = oldPosition;
+        }
+    }
+}
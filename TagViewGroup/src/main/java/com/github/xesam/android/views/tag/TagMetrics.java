@@ -0,0 +1,93 @@
+package com.github.xesam.android.views.tag;
+
+// 一次测量或布局过程的统计数据，由 OnTagMetricsListener 回调
+// 同一个 TagViewGroup 复用同一个对象，只在回调中有效，需要保存时请复制其中的数值
+public class TagMetrics {
+    public static final int PASS_MEASURE = 0;
+    public static final int PASS_LAYOUT = 1;
+
+    int mPass;
+    long mDurationNanos;
+    // 适配器 getView 的调用次数和总耗时
+    int mBindCount;
+    long mBindNanos;
+    // 适配器新建的视图数量，以及复用回收池或原视图的数量
+    int mCreatedViewCount;
+    int mReusedViewCount;
+    int mFlowedLineCount;
+    // 测量结果缓存（onMeasure 直接返回上一次结果）是否命中
+    boolean mMeasureCacheHit;
+    // 标签尺寸缓存：按缓存尺寸直接测量的标签数量，以及需要重新测量内容的标签数量
+    int mSizeCacheHitCount;
+    int mSizeCacheMissCount;
+
+    void reset(int pass) {
+        mPass = pass;
+        mDurationNanos = 0;
+        mBindCount = 0;
+        mBindNanos = 0;
+        mCreatedViewCount = 0;
+        mReusedViewCount = 0;
+        mFlowedLineCount = 0;
+        mMeasureCacheHit = false;
+        mSizeCacheHitCount = 0;
+        mSizeCacheMissCount = 0;
+    }
+
+    // PASS_MEASURE 或 PASS_LAYOUT
+    public int getPass() {
+        return mPass;
+    }
+
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    public long getBindNanos() {
+        return mBindNanos;
+    }
+
+    public int getCreatedViewCount() {
+        return mCreatedViewCount;
+    }
+
+    public int getReusedViewCount() {
+        return mReusedViewCount;
+    }
+
+    // 本次重新计算换行的行数
+    public int getFlowedLineCount() {
+        return mFlowedLineCount;
+    }
+
+    public boolean isMeasureCacheHit() {
+        return mMeasureCacheHit;
+    }
+
+    public int getSizeCacheHitCount() {
+        return mSizeCacheHitCount;
+    }
+
+    public int getSizeCacheMissCount() {
+        return mSizeCacheMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TagMetrics{pass=" + (mPass == PASS_MEASURE ? "measure" : "layout")
+                + ", durationNanos=" + mDurationNanos
+                + ", bindCount=" + mBindCount
+                + ", bindNanos=" + mBindNanos
+                + ", created=" + mCreatedViewCount
+                + ", reused=" + mReusedViewCount
+                + ", flowedLines=" + mFlowedLineCount
+                + ", measureCacheHit=" + mMeasureCacheHit
+                + ", sizeCacheHits=" + mSizeCacheHitCount
+                + ", sizeCacheMisses=" + mSizeCacheMissCount
+                + '}';
+    }
+}
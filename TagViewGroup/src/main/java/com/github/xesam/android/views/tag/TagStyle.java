@@ -0,0 +1,126 @@
+package com.github.xesam.android.views.tag;
+
+import android.content.res.ColorStateList;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.TypedValue;
+import android.view.View;
+import android.widget.TextView;
+
+// 所有标签共用的样式：背景、文字大小、字体、文字颜色和内边距，选中状态通过 state_activated 区分
+// 背景只保存一个原型，每个标签使用它的 ConstantState 生成实例，图片等资源在所有标签之间共享；
+// 文字颜色使用同一个 ColorStateList，不会为每个标签创建样式对象
+// 修改样式后再调用一次 TagViewGroup.setTagStyle 即可应用到已经显示的标签，不需要重新绑定
+public class TagStyle {
+    private Drawable mBackground;
+    private ColorStateList mTextColor;
+    // 文字大小（像素）和内边距，小于 0 表示不修改标签原来的设置
+    private float mTextSize = -1;
+    private Typeface mTypeface;
+    private int mPaddingHorizontal = -1;
+    private int mPaddingVertical = -1;
+    // 每次修改递增；影响标签尺寸的修改同时递增 mLayoutGeneration
+    private int mGeneration = 0;
+    private int mLayoutGeneration = 0;
+
+    // 背景可以是 StateListDrawable，选中的标签使用 state_activated 状态
+    // 每个标签需要独立的 Drawable 实例，背景必须提供 ConstantState
+    public void setBackground(Drawable background) {
+        if (background != null && background.getConstantState() == null) {
+            throw new IllegalArgumentException("background must provide a ConstantState");
+        }
+        mBackground = background;
+        mGeneration++;
+        mLayoutGeneration++;
+    }
+
+    public Drawable getBackground() {
+        return mBackground;
+    }
+
+    // 选中的标签使用 state_activated 状态的颜色
+    public void setTextColor(ColorStateList textColor) {
+        mTextColor = textColor;
+        mGeneration++;
+    }
+
+    public void setTextColor(int color) {
+        setTextColor(ColorStateList.valueOf(color));
+    }
+
+    public ColorStateList getTextColor() {
+        return mTextColor;
+    }
+
+    // 文字大小，单位为像素
+    public void setTextSize(float textSize) {
+        mTextSize = textSize;
+        mGeneration++;
+        mLayoutGeneration++;
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public void setTypeface(Typeface typeface) {
+        mTypeface = typeface;
+        mGeneration++;
+        mLayoutGeneration++;
+    }
+
+    public Typeface getTypeface() {
+        return mTypeface;
+    }
+
+    public void setPadding(int horizontal, int vertical) {
+        mPaddingHorizontal = horizontal;
+        mPaddingVertical = vertical;
+        mGeneration++;
+        mLayoutGeneration++;
+    }
+
+    public int getPaddingHorizontal() {
+        return mPaddingHorizontal;
+    }
+
+    public int getPaddingVertical() {
+        return mPaddingVertical;
+    }
+
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    int getLayoutGeneration() {
+        return mLayoutGeneration;
+    }
+
+    // 把样式应用到标签视图上，背景与原型来自同一个 ConstantState 时保留原来的实例
+    public void apply(View view) {
+        if (mBackground != null) {
+            Drawable current = view.getBackground();
+            Drawable.ConstantState state = mBackground.getConstantState();
+            if (current == null || current.getConstantState() != state) {
+                view.setBackground(state.newDrawable(view.getResources()));
+            }
+        }
+        if (mPaddingHorizontal >= 0 || mPaddingVertical >= 0) {
+            int horizontal = mPaddingHorizontal >= 0 ? mPaddingHorizontal : view.getPaddingLeft();
+            int vertical = mPaddingVertical >= 0 ? mPaddingVertical : view.getPaddingTop();
+            view.setPadding(horizontal, vertical, horizontal, vertical);
+        }
+        if (view instanceof TextView) {
+            TextView textView = (TextView) view;
+            if (mTextSize >= 0 && textView.getTextSize() != mTextSize) {
+                textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+            }
+            if (mTypeface != null && textView.getTypeface() != mTypeface) {
+                textView.setTypeface(mTypeface);
+            }
+            if (mTextColor != null && textView.getTextColors() != mTextColor) {
+                textView.setTextColor(mTextColor);
+            }
+        }
+    }
+}
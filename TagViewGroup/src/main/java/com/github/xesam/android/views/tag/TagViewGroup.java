@@ -1,41 +1,737 @@
 package com.github.xesam.android.views.tag;
 
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.Trace;
 import android.util.AttributeSet;
+import android.util.LongSparseArray;
+import android.util.SparseIntArray;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 
 public class TagViewGroup extends ViewGroup {
+    // 标签尺寸的缓存状态：未知、过期（可作为估算值）、已测量
+    private static final byte SIZE_UNKNOWN = 0;
+    private static final byte SIZE_ESTIMATED = 1;
+    private static final byte SIZE_MEASURED = 2;
+    // 绘制模式下文字标签的默认样式
+    private static final int DEFAULT_TAG_TEXT_COLOR = 0xDE000000;
+    private static final float DEFAULT_TAG_TEXT_SIZE_SP = 14;
+    private static final long DEFAULT_CHANGE_ANIMATION_DURATION = 200;
+    // 保存状态时最多保存的标签尺寸数量，超过时或者适配器没有稳定 id 时只保存选中状态
+    private static final int MAX_SAVED_ITEM_SIZES = 2000;
+
     private int mMaxLines = Integer.MAX_VALUE;
     private int mHorizontalSpacing = 0;
     private int mVerticalSpacing = 0;
+    // 宽度不受限制时的最大宽度，小于等于 0 表示不换行
+    private int mIntrinsicMaxWidth = 0;
+    // 间距过渡动画，没有动画时为 null
+    private ValueAnimator mSpacingAnimator;
+    // 变化动画：布局前后位置不同的标签平移过去，新出现的标签淡入，移除的标签淡出
+    // 只使用 translation 和 alpha，动画过程中不会重新布局
+    private boolean mChangeAnimationsEnabled = false;
+    private long mChangeAnimationDuration = DEFAULT_CHANGE_ANIMATION_DURATION;
+    // 当前的标签是否已经布局过，第一次布局不播放动画
+    private boolean mTagsLaidOut = false;
     private TagAdapter<?> mAdapter;
     private OnTagClickListener mOnTagClickListener;
+    private OnOverflowChangedListener mOnOverflowChangedListener;
+    // 最近一次回调给 OnOverflowChangedListener 的显示数量和隐藏数量
+    private int mReportedVisibleCount = 0;
+    private int mReportedHiddenCount = 0;
     private OnClickListener mOnMoreClickListener;
+    private TagViewPool mRecycledViewPool;
+    // 异步创建标签视图：每种视图类型已经请求、还没有送达的数量，以及本次测量中缺少的数量
+    private TagViewInflater mTagViewInflater;
+    private final SparseIntArray mPendingInflations = new SparseIntArray();
+    private final SparseIntArray mInflateNeeds = new SparseIntArray();
+    private final TagViewInflater.Callback mInflateCallback = new TagViewInflater.Callback() {
+        @Override
+        public void onInflated(int viewType, View view) {
+            mPendingInflations.put(viewType, Math.max(0, mPendingInflations.get(viewType) - 1));
+            getRecycledViewPool().putRecycledView(viewType, view);
+            // 从第一个还没有挂载的标签开始重新换行，挂载已经送达的视图
+            markLinesDirty(mFirstAttachedPosition + getTagChildCount());
+            requestLayout();
+        }
+    };
+    // 所有标签共享的点击监听，数据位置从 LayoutParams 中读取
+    private final OnClickListener mTagClickHandler = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int position = ((LayoutParams) v.getLayoutParams()).position;
+            if (mChoiceMode != CHOICE_MODE_NONE) {
+                setTagSelected(position, !mSelection.get(position));
+            }
+            if (mOnTagClickListener != null) {
+                mOnTagClickListener.onTagClick(v, position);
+            }
+        }
+    };
+    private final TagDataObserver mDataObserver = new TagDataObserver() {
+        @Override
+        public void onChanged() {
+            clearPrecomputedLayout();
+            if (mAdapter.hasStableIds()) {
+                remapSelectionByIds();
+            } else {
+                trimSelection(mAdapter.getCount());
+            }
+            rebindAllChildViews();
+            applyPendingSavedState();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            clearPrecomputedLayout();
+            rebindChildViews(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            clearPrecomputedLayout();
+            offsetSelection(positionStart, itemCount);
+            insertChildViews(positionStart, itemCount);
+            applyPendingSavedState();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            clearPrecomputedLayout();
+            removeSelection(positionStart, itemCount);
+            syncSelectedIds();
+            removeChildViews(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            clearPrecomputedLayout();
+            moveSelection(fromPosition, toPosition);
+            moveChildViews(fromPosition, toPosition);
+        }
+    };
+
+    // 选择模式：选中的数据位置保存在 BitSet 中，数据变化时随位置平移
+    // 选中状态变化只通过 TagAdapter.onBindSelection 更新对应标签的视图状态，不会重新测量、布局或绑定
+    public static final int CHOICE_MODE_NONE = 0;
+    public static final int CHOICE_MODE_SINGLE = 1;
+    public static final int CHOICE_MODE_MULTIPLE = 2;
+    private int mChoiceMode = CHOICE_MODE_NONE;
+    private final BitSet mSelection = new BitSet();
+    // 适配器有稳定 id 时同时记录选中数据的 id，整个数据集刷新后按 id 找回选中的位置
+    private final LongSparseArray<Boolean> mSelectedIds = new LongSparseArray<>();
+    // 等待适配器数据就绪后再恢复的状态
+    private SavedState mPendingSavedState;
+    // 多选模式下最多选中的数量，以及是否不允许取消最后一个选中的标签
+    private int mMaxSelectedCount = Integer.MAX_VALUE;
+    private boolean mSelectionRequired = false;
+    private OnTagSelectionChangedListener mOnTagSelectionChangedListener;
+
+    // 虚拟化模式：只挂载与可见区域（加上预取范围）相交的标签
+    private boolean mVirtualized = false;
+    // 可见区域上下额外挂载的范围，小于 0 时使用可见高度的一半
+    private int mPrefetchMargin = -1;
+    // 第一个挂载的标签对应的数据位置，挂载的标签总是一段连续的位置
+    private int mFirstAttachedPosition = 0;
+    // 未测量标签的估算尺寸，取已测量标签的平均值
+    private int mEstimatedItemWidth = 0;
+    private int mEstimatedItemHeight = 0;
+    private final Rect mVisibleRect = new Rect();
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            if (mVirtualized && !isLayoutRequested() && updateVirtualWindow()) {
+                layoutTagChildren();
+                invalidate();
+            }
+        }
+    };
+    // 新挂载的标签尺寸与估算值不同时，在下一帧重新测量
+    private final Runnable mRelayoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            requestLayout();
+        }
+    };
+
+    // 当前挂载的"更多"视图，没有时为 null
+    private View mMoreView;
+    // 最近一次绑定到"更多"视图的隐藏数量，-1 表示还没有绑定
+    private int mMoreViewHiddenCount = -1;
+
+    // 绘制模式：不创建子视图，直接绘制 setTextTags 设置的文字标签
+    private final TextTagRenderer mTextTagRenderer = new TextTagRenderer();
+    // 所有标签共用的样式，mTagStyleLayoutGeneration 记录最近一次应用时影响尺寸的修改次数
+    private TagStyle mTagStyle;
+    private int mTagStyleLayoutGeneration = 0;
+    private TextTagAccessibilityHelper mTextTagAccessibilityHelper;
+    // 当前按下的文字标签，以及这次触摸是否从文字标签上开始
+    private int mPressedTextTag = -1;
+    private boolean mTouchOnTextTag = false;
+    private final Rect mClipBounds = new Rect();
+    private final Rect mTextTagBounds = new Rect();
 
+    // 换行缓存：每个标签的尺寸，换行结果保存在 mFlowEngine 中
+    private int[] mItemWidths = new int[16];
+    private int[] mItemHeights = new int[16];
+    private byte[] mItemSizeStates = new byte[16];
+    private final FlowLayoutEngine mFlowEngine = new FlowLayoutEngine();
+    // 换行过程中按需挂载和测量标签
+    private final FlowLayoutEngine.ItemMeasurer mItemMeasurer = new FlowLayoutEngine.ItemMeasurer() {
+        @Override
+        public void measureItem(int position) {
+            resolveItemSize(position, mCachedWidthSpec, mCachedHeightSpec);
+        }
+
+        @Override
+        public int estimateItemWidth(int position) {
+            if (mVirtualized || getAttachedChild(position) != null) {
+                return -1;
+            }
+            // 之前测量过的宽度比适配器的估算值更准确，也不需要再询问适配器
+            if (mItemSizeStates[position] != SIZE_UNKNOWN) {
+                return mItemWidths[position];
+            }
+            return mAdapter.estimateItemWidth(position, TagViewGroup.this);
+        }
+    };
+    // 已知的数据数量，随数据变化通知同步更新
+    private int mItemCount = 0;
+    // 第一个需要重新换行的标签位置，Integer.MAX_VALUE 表示缓存有效
+    private int mFirstDirtyPosition = 0;
+    // 生成换行缓存时使用的测量约束
+    private int mCachedWidthSpec = -1;
+    private int mCachedHeightSpec = -1;
+    // 测量缓存：每次请求重新布局都会增加 mMeasureGeneration，约束和 mMeasureGeneration 都与上一次测量相同时直接使用上一次的结果
+    // 数据通知、重新绑定和属性变化都会调用 requestLayout；本身已经在等待布局时子视图的 requestLayout 不会传到这里，
+    // 所以在数据通知之外修改标签内容（比如异步加载的图片）后需要调用 notifyItemChanged 或者 TagViewGroup.requestLayout
+    private int mMeasureGeneration = 0;
+    private int mLastMeasureGeneration = -1;
+    private int mLastWidthMeasureSpec = -1;
+    private int mLastHeightMeasureSpec = -1;
+    private int mLastMeasuredWidth = 0;
+    private int mLastMeasuredHeight = 0;
+    // 性能统计：设置监听后才会计时和计数，mMetrics 为 null 时不增加任何开销
+    private OnTagMetricsListener mMetricsListener;
+    private TagMetrics mMetrics;
+    private long mPassStartNanos = 0;
+    // 是否输出 Trace 区段，开启后可以在 Perfetto 中看到测量、布局和绑定的耗时
+    private boolean mTraceEnabled = false;
+    // 预先计算的排布结果，以及标签尺寸当前是否来自预计算结果
+    private TagLayoutCache mPrecomputedLayout;
+    private int mPrecomputedIndex = -1;
+    private boolean mPrecomputedApplied = false;
+    // 换行结果来自保存的状态，下一次测量时只需要挂载显示的标签
+    private boolean mFlowRestored = false;
+
+    // 重置所有子视图，挂载过的标签放回回收池
     private void refreshChildViews() {
+        clearPrecomputedLayout();
+        recycleAllChildViews();
+        mTagsLaidOut = false;
+        mMoreView = null;
+        mMoreViewHiddenCount = -1;
+        mFirstAttachedPosition = 0;
+        mItemCount = mAdapter == null ? 0 : mAdapter.getCount();
+        Arrays.fill(mItemSizeStates, SIZE_UNKNOWN);
+        markLinesDirty(0);
+
         if (mAdapter == null) {
-            removeAllViews();
+            requestLayout();
             return;
         }
 
-        removeAllViews();
-
-        // 添加普通标签
-        int childCount = mAdapter.getCount();
-        for (int i = 0; i < childCount; i++) {
-            View child = mAdapter.getView(i, this);
-            addView(child);
-        }
+        // 普通标签在测量时按需挂载：截断模式下只创建放得下的标签，虚拟化模式下只创建可见区域附近的标签
 
         // 添加MoreView
         View moreView = mAdapter.getMoreView(this);
         if (moreView != null) {
-            addView(moreView);
+            LayoutParams lp = generateLayoutParams(moreView);
+            lp.isMoreView = true;
+            addView(moreView, lp);
+            moreView.setOnClickListener(mOnMoreClickListener);
+            mMoreView = moreView;
+        }
+
+        requestLayout();
+    }
+
+    // 整个数据集变化时保留已经挂载的标签和"更多"视图，原地重新绑定，多出来的标签放回回收池
+    private void rebindAllChildViews() {
+        int itemCount = mAdapter.getCount();
+        mMoreViewHiddenCount = -1;
+        // 标签尺寸稳定并且数量不变时，测量和换行缓存仍然有效
+        boolean keepSizes = mAdapter.hasStableSizes() && itemCount == mItemCount;
+        mItemCount = itemCount;
+
+        int tagChildCount = getTagChildCount();
+        int first = mFirstAttachedPosition < itemCount ? mFirstAttachedPosition : 0;
+        int keepCount = mFirstAttachedPosition < itemCount ? Math.min(tagChildCount, itemCount - first) : 0;
+        if (mAdapter.hasStableIds()) {
+            rebindChildViewsByIds(first, keepCount, keepSizes);
+        } else {
+            if (!keepSizes) {
+                Arrays.fill(mItemSizeStates, SIZE_UNKNOWN);
+                markLinesDirty(0);
+            }
+            if (keepCount < tagChildCount) {
+                recycleTagChildren(keepCount, tagChildCount - keepCount);
+            }
+            mFirstAttachedPosition = first;
+            for (int i = 0; i < keepCount; i++) {
+                rebindChild(first + i);
+            }
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    // 有稳定 id 时标签视图跟随数据：id 仍然存在的标签换到数据的新位置再绑定，变化动画显示为移动而不是内容替换
+    // 尺寸缓存不能按位置保留时，这些标签之前测量的尺寸作为新位置的估算值
+    private void rebindChildViewsByIds(int first, int keepCount, boolean keepSizes) {
+        int tagChildCount = getTagChildCount();
+        View[] oldChildren = new View[tagChildCount];
+        int[] oldWidths = new int[tagChildCount];
+        int[] oldHeights = new int[tagChildCount];
+        byte[] oldStates = new byte[tagChildCount];
+        LongSparseArray<Integer> oldIndexes = new LongSparseArray<>(tagChildCount);
+        for (int i = 0; i < tagChildCount; i++) {
+            View child = getChildAt(i);
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            oldChildren[i] = child;
+            oldWidths[i] = mItemWidths[lp.position];
+            oldHeights[i] = mItemHeights[lp.position];
+            oldStates[i] = mItemSizeStates[lp.position];
+            if (lp.itemId != TagAdapter.NO_ID) {
+                oldIndexes.put(lp.itemId, i);
+            }
+        }
+        // 只是暂时从子视图中拿出来，不会触发 onDetachedFromWindow，原来的位置和布局状态都保留
+        detachViewsFromParent(0, tagChildCount);
+        if (!keepSizes) {
+            Arrays.fill(mItemSizeStates, SIZE_UNKNOWN);
+            markLinesDirty(0);
+        }
+        mFirstAttachedPosition = first;
+
+        TagViewPool pool = getRecycledViewPool();
+        for (int i = 0; i < keepCount; i++) {
+            int position = first + i;
+            long id = mAdapter.getItemId(position);
+            Integer oldIndex = oldIndexes.get(id);
+            View oldChild = oldIndex == null ? null : oldChildren[oldIndex];
+            if (oldChild == null) {
+                View child = obtainView(position);
+                addViewInLayout(child, i, child.getLayoutParams(), true);
+                continue;
+            }
+            oldChildren[oldIndex] = null;
+            if (!keepSizes && oldStates[oldIndex] != SIZE_UNKNOWN) {
+                mItemWidths[position] = oldWidths[oldIndex];
+                mItemHeights[position] = oldHeights[oldIndex];
+                mItemSizeStates[position] = SIZE_ESTIMATED;
+            }
+
+            LayoutParams lp = (LayoutParams) oldChild.getLayoutParams();
+            int viewType = mAdapter.getItemViewType(position);
+            View newChild = viewType == lp.viewType ? bindView(position, oldChild) : null;
+            if (newChild == oldChild) {
+                lp.position = position;
+                lp.itemId = id;
+                bindSelection(oldChild, position);
+                attachViewToParent(oldChild, i, lp);
+                continue;
+            }
+            removeDetachedView(oldChild, false);
+            pool.putRecycledView(lp.viewType, oldChild);
+            if (newChild == null) {
+                newChild = obtainView(position);
+            } else {
+                setupChild(newChild, position, viewType);
+            }
+            addViewInLayout(newChild, i, newChild.getLayoutParams(), true);
+        }
+
+        // 数据中已经不存在或者超出挂载范围的标签放回回收池
+        for (View child : oldChildren) {
+            if (child != null) {
+                removeDetachedView(child, false);
+                pool.putRecycledView(((LayoutParams) child.getLayoutParams()).viewType, child);
+            }
+        }
+    }
+
+    // 重新绑定内容发生变化的标签
+    private void rebindChildViews(int positionStart, int itemCount) {
+        if (!mAdapter.hasStableSizes()) {
+            markLinesDirty(positionStart);
+            int positionEnd = Math.min(positionStart + itemCount, mItemSizeStates.length);
+            for (int i = positionStart; i < positionEnd; i++) {
+                if (mItemSizeStates[i] == SIZE_MEASURED) {
+                    mItemSizeStates[i] = SIZE_ESTIMATED;
+                }
+            }
+        }
+
+        int from = Math.max(positionStart, mFirstAttachedPosition);
+        int to = Math.min(positionStart + itemCount, mFirstAttachedPosition + getTagChildCount());
+        for (int i = from; i < to; i++) {
+            rebindChild(i);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    // 视图类型不变时把数据绑定到原视图上，否则换成同类型的视图
+    private void rebindChild(int position) {
+        int index = position - mFirstAttachedPosition;
+        View child = getChildAt(index);
+        LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        int viewType = mAdapter.getItemViewType(position);
+        View newChild = viewType == lp.viewType ? bindView(position, child) : null;
+        if (newChild == child) {
+            lp.position = position;
+            lp.itemId = mAdapter.hasStableIds() ? mAdapter.getItemId(position) : TagAdapter.NO_ID;
+            bindSelection(child, position);
+            return;
+        }
+        removeViewsInLayout(index, 1);
+        getRecycledViewPool().putRecycledView(lp.viewType, child);
+        if (newChild == null) {
+            newChild = obtainView(position);
+        } else {
+            setupChild(newChild, position, viewType);
+        }
+        addViewInLayout(newChild, index, newChild.getLayoutParams(), true);
+    }
+
+    // 只为插入到已挂载范围内的数据创建标签，并修正之后标签的位置
+    private void insertChildViews(int positionStart, int itemCount) {
+        markLinesDirty(positionStart);
+        int oldCount = mItemCount;
+        mItemCount += itemCount;
+        ensureItemCapacity(oldCount + itemCount);
+        if (positionStart < oldCount) {
+            System.arraycopy(mItemWidths, positionStart, mItemWidths, positionStart + itemCount, oldCount - positionStart);
+            System.arraycopy(mItemHeights, positionStart, mItemHeights, positionStart + itemCount, oldCount - positionStart);
+            System.arraycopy(mItemSizeStates, positionStart, mItemSizeStates, positionStart + itemCount, oldCount - positionStart);
+        }
+        Arrays.fill(mItemSizeStates, positionStart, positionStart + itemCount, SIZE_UNKNOWN);
+
+        int attachedEnd = mFirstAttachedPosition + getTagChildCount();
+        offsetChildPositions(positionStart, itemCount);
+        if (positionStart < mFirstAttachedPosition) {
+            mFirstAttachedPosition += itemCount;
+        } else if (positionStart < attachedEnd) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                View child = obtainView(i);
+                addViewInLayout(child, i - mFirstAttachedPosition, child.getLayoutParams(), true);
+            }
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    // 只移除被删除数据对应的标签，并修正之后标签的位置
+    private void removeChildViews(int positionStart, int itemCount) {
+        markLinesDirty(positionStart);
+        int positionEnd = positionStart + itemCount;
+        int oldCount = mItemCount;
+        mItemCount -= itemCount;
+        if (positionEnd < oldCount && oldCount <= mItemSizeStates.length) {
+            System.arraycopy(mItemWidths, positionEnd, mItemWidths, positionStart, oldCount - positionEnd);
+            System.arraycopy(mItemHeights, positionEnd, mItemHeights, positionStart, oldCount - positionEnd);
+            System.arraycopy(mItemSizeStates, positionEnd, mItemSizeStates, positionStart, oldCount - positionEnd);
+        }
+
+        int first = mFirstAttachedPosition;
+        int from = Math.max(positionStart, first);
+        int to = Math.min(positionEnd, first + getTagChildCount());
+        if (from < to) {
+            removeTagChildren(from - first, to - from);
+        }
+        mFirstAttachedPosition = first < positionStart ? first : (first >= positionEnd ? first - itemCount : positionStart);
+        offsetChildPositions(positionEnd, -itemCount);
+        requestLayout();
+        invalidate();
+    }
+
+    // 移动数据时保留对应的标签视图和尺寸缓存，只修正两个位置之间标签的位置
+    private void moveChildViews(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        int low = Math.min(fromPosition, toPosition);
+        int high = Math.max(fromPosition, toPosition);
+        markLinesDirty(low);
+        ensureItemCapacity(high + 1);
+        rotateItemSize(fromPosition, toPosition);
+
+        int first = mFirstAttachedPosition;
+        // toPosition 落在原来的挂载范围内时，移动后挂载范围需要包含 toPosition（由移动的标签填上或者回收之后的标签）
+        boolean toInRange = toPosition >= first && toPosition < first + getTagChildCount();
+        View moved = getAttachedChild(fromPosition);
+        if (moved != null) {
+            removeViewsInLayout(fromPosition - first, 1);
         }
+        int tagChildCount = getTagChildCount();
+        for (int i = 0; i < tagChildCount; i++) {
+            LayoutParams lp = (LayoutParams) getChildAt(i).getLayoutParams();
+            if (lp.position > low && lp.position <= high && fromPosition < toPosition) {
+                lp.position--;
+            } else if (lp.position >= low && lp.position < high && toPosition < fromPosition) {
+                lp.position++;
+            }
+        }
+        // 移到挂载范围最前面时，其余标签的第一个位置在 toPosition 之后
+        int shiftedFirst = tagChildCount > 0 ? ((LayoutParams) getChildAt(0).getLayoutParams()).position : first;
+        if (toInRange) {
+            first = tagChildCount > 0 ? Math.min(shiftedFirst, toPosition) : toPosition;
+        } else {
+            first = shiftedFirst;
+        }
+        mFirstAttachedPosition = first;
 
+        int index = toPosition - first;
+        if (moved != null) {
+            ((LayoutParams) moved.getLayoutParams()).position = toPosition;
+            if (index >= 0 && index <= tagChildCount) {
+                addViewInLayout(moved, index, moved.getLayoutParams(), true);
+            } else {
+                getRecycledViewPool().putRecycledView(((LayoutParams) moved.getLayoutParams()).viewType, moved);
+            }
+        } else if (index >= 0 && index < tagChildCount) {
+            // 移入已挂载范围中间的数据没有标签，回收之后的标签以保持挂载位置连续，布局时会重新挂载
+            recycleTagChildren(index, tagChildCount - index);
+        }
         requestLayout();
+        invalidate();
+    }
+
+    // 把 fromPosition 的尺寸缓存移动到 toPosition，中间的缓存依次平移
+    private void rotateItemSize(int fromPosition, int toPosition) {
+        int width = mItemWidths[fromPosition];
+        int height = mItemHeights[fromPosition];
+        byte state = mItemSizeStates[fromPosition];
+        if (fromPosition < toPosition) {
+            System.arraycopy(mItemWidths, fromPosition + 1, mItemWidths, fromPosition, toPosition - fromPosition);
+            System.arraycopy(mItemHeights, fromPosition + 1, mItemHeights, fromPosition, toPosition - fromPosition);
+            System.arraycopy(mItemSizeStates, fromPosition + 1, mItemSizeStates, fromPosition, toPosition - fromPosition);
+        } else {
+            System.arraycopy(mItemWidths, toPosition, mItemWidths, toPosition + 1, fromPosition - toPosition);
+            System.arraycopy(mItemHeights, toPosition, mItemHeights, toPosition + 1, fromPosition - toPosition);
+            System.arraycopy(mItemSizeStates, toPosition, mItemSizeStates, toPosition + 1, fromPosition - toPosition);
+        }
+        mItemWidths[toPosition] = width;
+        mItemHeights[toPosition] = height;
+        mItemSizeStates[toPosition] = state;
+    }
+
+    // 修正数据位置不小于 fromPosition 的已挂载标签
+    private void offsetChildPositions(int fromPosition, int offset) {
+        int tagChildCount = getTagChildCount();
+        for (int i = 0; i < tagChildCount; i++) {
+            LayoutParams lp = (LayoutParams) getChildAt(i).getLayoutParams();
+            if (lp.position >= fromPosition) {
+                lp.position += offset;
+            }
+        }
+    }
+
+    // 从回收池中取出同类型的视图交给适配器绑定，回收池为空时由适配器创建
+    private View obtainView(int position) {
+        int viewType = mAdapter.getItemViewType(position);
+        View scrap = getRecycledViewPool().getRecycledView(viewType);
+        View child = bindView(position, scrap);
+        setupChild(child, position, viewType);
+        return child;
+    }
+
+    // 调用适配器绑定数据，开启统计时记录耗时，以及视图是新建的还是复用的
+    private View bindView(int position, View convertView) {
+        TagMetrics metrics = mMetrics;
+        if (metrics == null && !mTraceEnabled) {
+            return mAdapter.getView(position, convertView, this);
+        }
+        if (mTraceEnabled) {
+            Trace.beginSection("TagViewGroup#bind");
+        }
+        long start = System.nanoTime();
+        View view = mAdapter.getView(position, convertView, this);
+        if (metrics != null) {
+            metrics.mBindNanos += System.nanoTime() - start;
+            metrics.mBindCount++;
+            if (convertView != null && view == convertView) {
+                metrics.mReusedViewCount++;
+            } else {
+                metrics.mCreatedViewCount++;
+            }
+        }
+        if (mTraceEnabled) {
+            Trace.endSection();
+        }
+        return view;
+    }
+
+    private void beginPass(int pass, String traceName) {
+        if (mTraceEnabled) {
+            Trace.beginSection(traceName);
+        }
+        if (mMetrics != null) {
+            mMetrics.mPass = pass;
+            mPassStartNanos = System.nanoTime();
+        }
+    }
+
+    // 回调统计结果后清零，之后的绑定计入下一次测量或布局
+    private void endPass() {
+        TagMetrics metrics = mMetrics;
+        // 在本次测量或布局过程中才设置的监听，等到下一次再回调
+        if (metrics != null && mPassStartNanos != 0) {
+            metrics.mDurationNanos = System.nanoTime() - mPassStartNanos;
+            mPassStartNanos = 0;
+            mMetricsListener.onTagMetrics(this, metrics);
+            metrics.reset(TagMetrics.PASS_MEASURE);
+        }
+        if (mTraceEnabled) {
+            Trace.endSection();
+        }
+    }
+
+    private void setupChild(View child, int position, int viewType) {
+        LayoutParams lp = generateLayoutParams(child);
+        lp.position = position;
+        lp.viewType = viewType;
+        lp.isMoreView = false;
+        lp.itemId = mAdapter.hasStableIds() ? mAdapter.getItemId(position) : TagAdapter.NO_ID;
+        child.setLayoutParams(lp);
+        child.setOnClickListener(mTagClickHandler);
+        applyTagStyle(child, lp);
+        bindSelection(child, position);
+        if (mChangeAnimationsEnabled) {
+            // 回收时可能还在平移或淡入
+            child.animate().cancel();
+            resetAnimatedProperties(child);
+        }
+    }
+
+    // 从回收池取出的视图已经应用过同一版本的样式时不再重复设置
+    private void applyTagStyle(View child, LayoutParams lp) {
+        TagStyle style = mTagStyle;
+        if (style == null || (lp.style == style && lp.styleGeneration == style.getGeneration())) {
+            return;
+        }
+        style.apply(child);
+        lp.style = style;
+        lp.styleGeneration = style.getGeneration();
+    }
+
+    private void bindSelection(View child, int position) {
+        if (mChoiceMode != CHOICE_MODE_NONE) {
+            mAdapter.onBindSelection(child, position, mSelection.get(position));
+        }
+    }
+
+    // 移除所有子视图，并把普通标签放回回收池
+    private void recycleAllChildViews() {
+        TagViewPool pool = getRecycledViewPool();
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            removeViewsInLayout(i, 1);
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (!lp.isMoreView) {
+                pool.putRecycledView(lp.viewType, child);
+            }
+        }
+    }
+
+    // 移除从 index 开始的 count 个普通标签，并放回回收池
+    private void recycleTagChildren(int index, int count) {
+        TagViewPool pool = getRecycledViewPool();
+        for (int i = index + count - 1; i >= index; i--) {
+            View child = getChildAt(i);
+            removeViewsInLayout(i, 1);
+            pool.putRecycledView(((LayoutParams) child.getLayoutParams()).viewType, child);
+        }
+    }
+
+    // 移除不再显示的标签，播放变化动画时先淡出：动画期间仍然在原来的位置绘制，结束后再放回回收池
+    private void removeTagChildren(int index, int count) {
+        if (!canAnimateChanges()) {
+            recycleTagChildren(index, count);
+            return;
+        }
+        final TagViewPool pool = getRecycledViewPool();
+        for (int i = index + count - 1; i >= index; i--) {
+            final View child = getChildAt(i);
+            final int viewType = ((LayoutParams) child.getLayoutParams()).viewType;
+            if (child.getWidth() == 0) {
+                removeViewsInLayout(i, 1);
+                pool.putRecycledView(viewType, child);
+                continue;
+            }
+            startViewTransition(child);
+            removeViewsInLayout(i, 1);
+            child.animate().alpha(0f).setDuration(mChangeAnimationDuration).withEndAction(new Runnable() {
+                @Override
+                public void run() {
+                    endViewTransition(child);
+                    resetAnimatedProperties(child);
+                    pool.putRecycledView(viewType, child);
+                }
+            }).start();
+        }
+    }
+
+    private boolean canAnimateChanges() {
+        // 虚拟化模式下挂载和回收由滚动触发，间距动画本身逐帧重新布局，都不需要变化动画
+        return mChangeAnimationsEnabled && mTagsLaidOut && !mVirtualized && mSpacingAnimator == null;
+    }
+
+    private static void resetAnimatedProperties(View child) {
+        child.setAlpha(1f);
+        child.setTranslationX(0f);
+        child.setTranslationY(0f);
+    }
+
+    private LayoutParams generateLayoutParams(View child) {
+        ViewGroup.LayoutParams lp = child.getLayoutParams();
+        if (lp == null) {
+            return generateDefaultLayoutParams();
+        }
+        if (lp instanceof LayoutParams) {
+            return (LayoutParams) lp;
+        }
+        return generateLayoutParams(lp);
+    }
+
+    private int getTagChildCount() {
+        return mMoreView == null ? getChildCount() : getChildCount() - 1;
+    }
+
+    // 获取指定数据位置对应的已挂载标签，没有挂载时返回 null
+    private View getAttachedChild(int position) {
+        int index = position - mFirstAttachedPosition;
+        if (index < 0 || index >= getTagChildCount()) {
+            return null;
+        }
+        return getChildAt(index);
     }
 
     public TagViewGroup(Context context) {
@@ -48,18 +744,40 @@ public class TagViewGroup extends ViewGroup {
     }
 
     private void init(Context context, AttributeSet attrs) {
+        float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_TAG_TEXT_SIZE_SP,
+                context.getResources().getDisplayMetrics());
         if (attrs != null) {
             TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.Xesam_TagViewGroup);
             mMaxLines = a.getInt(R.styleable.Xesam_TagViewGroup_maxLines, Integer.MAX_VALUE);
             mHorizontalSpacing = a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_horizontalSpacing, 0);
             mVerticalSpacing = a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_verticalSpacing, 0);
+            mVirtualized = a.getBoolean(R.styleable.Xesam_TagViewGroup_virtualized, false);
+            mPrefetchMargin = a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_prefetchMargin, -1);
+            mIntrinsicMaxWidth = a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_intrinsicMaxWidth, 0);
+            mTextTagRenderer.setBackground(a.getDrawable(R.styleable.Xesam_TagViewGroup_tagBackground));
+            mTextTagRenderer.setTextColor(a.getColor(R.styleable.Xesam_TagViewGroup_tagTextColor, DEFAULT_TAG_TEXT_COLOR));
+            mTextTagRenderer.setTextSize(a.getDimension(R.styleable.Xesam_TagViewGroup_tagTextSize, defaultTextSize));
+            mTextTagRenderer.setPadding(
+                    a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_tagPaddingHorizontal, 0),
+                    a.getDimensionPixelSize(R.styleable.Xesam_TagViewGroup_tagPaddingVertical, 0));
+            mChoiceMode = a.getInt(R.styleable.Xesam_TagViewGroup_choiceMode, CHOICE_MODE_NONE);
+            mMaxSelectedCount = a.getInt(R.styleable.Xesam_TagViewGroup_maxSelectedCount, Integer.MAX_VALUE);
+            mSelectionRequired = a.getBoolean(R.styleable.Xesam_TagViewGroup_selectionRequired, false);
             a.recycle();
+        } else {
+            mTextTagRenderer.setTextColor(DEFAULT_TAG_TEXT_COLOR);
+            mTextTagRenderer.setTextSize(defaultTextSize);
         }
     }
 
+    // 最大行数、间距只影响标签的排布，修改后只重新布局，不会重新创建标签
+    // 同一帧内的多次修改只会触发一次测量和布局
     public void setMaxLines(int maxLines) {
+        if (maxLines == mMaxLines) {
+            return;
+        }
         mMaxLines = maxLines;
-        refreshChildViews();
+        requestLayout();
     }
 
     public int getMaxLines() {
@@ -67,8 +785,8 @@ public class TagViewGroup extends ViewGroup {
     }
 
     public void setHorizontalSpacing(int spacing) {
-        mHorizontalSpacing = spacing;
-        refreshChildViews();
+        cancelSpacingAnimation();
+        applySpacing(spacing, mVerticalSpacing);
     }
 
     public int getHorizontalSpacing() {
@@ -76,249 +794,1548 @@ public class TagViewGroup extends ViewGroup {
     }
 
     public void setVerticalSpacing(int spacing) {
-        mVerticalSpacing = spacing;
-        refreshChildViews();
+        cancelSpacingAnimation();
+        applySpacing(mHorizontalSpacing, spacing);
     }
 
     public int getVerticalSpacing() {
         return mVerticalSpacing;
     }
 
-    public void setOnTagClickListener(OnTagClickListener listener) {
-        mOnTagClickListener = listener;
+    // 设置宽度不受限制（MeasureSpec.UNSPECIFIED）时标签换行使用的最大宽度，小于等于 0 时所有标签排成一行
+    public void setIntrinsicMaxWidth(int maxWidth) {
+        if (maxWidth == mIntrinsicMaxWidth) {
+            return;
+        }
+        mIntrinsicMaxWidth = maxWidth;
+        requestLayout();
     }
 
-    public void setOnMoreClickListener(OnClickListener listener) {
-        mOnMoreClickListener = listener;
+    public int getIntrinsicMaxWidth() {
+        return mIntrinsicMaxWidth;
     }
 
-    public void setAdapter(TagAdapter<?> adapter) {
-        mAdapter = adapter;
-        refreshChildViews();
+    // 不截断任何标签时允许的最小宽度，即最宽的单个标签的宽度
+    // 父容器可以根据最小和最大固有宽度一次确定 TagViewGroup 的宽度，不需要先测量再调整
+    public int getMinIntrinsicWidth() {
+        int count = getIntrinsicItemCount();
+        int width = 0;
+        for (int i = 0; i < count; i++) {
+            width = Math.max(width, getIntrinsicItemWidth(i));
+        }
+        return width;
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        if (mAdapter == null) {
-            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-            return;
+    // 所有标签排成一行时需要的宽度，不考虑最大行数和"更多"视图
+    public int getMaxIntrinsicWidth() {
+        int count = getIntrinsicItemCount();
+        int width = 0;
+        for (int i = 0; i < count; i++) {
+            width += getIntrinsicItemWidth(i) + (i > 0 ? mHorizontalSpacing : 0);
         }
+        return width;
+    }
 
-        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
-        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
-        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+    private int getIntrinsicItemCount() {
+        if (mTextTagRenderer.hasTexts()) {
+            return mTextTagRenderer.getCount();
+        }
+        return mAdapter == null ? 0 : mAdapter.getCount();
+    }
 
-        // 修复RecyclerView中高度计算问题
-        int maxWidth = widthMode == MeasureSpec.EXACTLY ? widthSize :
-                (widthMode == MeasureSpec.AT_MOST ? widthSize : Integer.MAX_VALUE);
+    // 获取标签不受宽度限制时的宽度：优先使用缓存的尺寸和适配器的估算值，
+    // 都没有时用一个不挂载的视图测量，结果作为估算值缓存，测量完放回回收池
+    private int getIntrinsicItemWidth(int position) {
+        if (mTextTagRenderer.hasTexts()) {
+            return mTextTagRenderer.getIntrinsicWidth(position);
+        }
+        ensureItemCapacity(position + 1);
+        if (mItemSizeStates[position] != SIZE_UNKNOWN) {
+            return mItemWidths[position];
+        }
+        int estimatedWidth = mAdapter.estimateItemWidth(position, this);
+        if (estimatedWidth >= 0) {
+            return estimatedWidth;
+        }
+        View child = obtainView(position);
+        int unspecified = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        child.measure(unspecified, unspecified);
+        mItemWidths[position] = child.getMeasuredWidth();
+        mItemHeights[position] = child.getMeasuredHeight();
+        mItemSizeStates[position] = SIZE_ESTIMATED;
+        getRecycledViewPool().putRecycledView(((LayoutParams) child.getLayoutParams()).viewType, child);
+        return mItemWidths[position];
+    }
 
-        // 如果宽度未确定，使用父容器提供的最大宽度
-        if (maxWidth == 0 || maxWidth == Integer.MAX_VALUE) {
-            maxWidth = getSuggestedMinimumWidth();
-            if (maxWidth <= 0) {
-                maxWidth = getResources().getDisplayMetrics().widthPixels;
-            }
+    // 以动画的方式把间距过渡到目标值，每一帧只用缓存的标签尺寸重新换行，不会测量标签内容
+    public void animateSpacing(int horizontalSpacing, int verticalSpacing) {
+        cancelSpacingAnimation();
+        if (horizontalSpacing == mHorizontalSpacing && verticalSpacing == mVerticalSpacing) {
+            return;
         }
+        final int fromHorizontal = mHorizontalSpacing;
+        final int fromVertical = mVerticalSpacing;
+        final int toHorizontal = horizontalSpacing;
+        final int toVertical = verticalSpacing;
+        mSpacingAnimator = ValueAnimator.ofFloat(0f, 1f);
+        mSpacingAnimator.setDuration(getResources().getInteger(android.R.integer.config_shortAnimTime));
+        mSpacingAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float fraction = animation.getAnimatedFraction();
+                applySpacing(Math.round(fromHorizontal + (toHorizontal - fromHorizontal) * fraction),
+                        Math.round(fromVertical + (toVertical - fromVertical) * fraction));
+            }
+        });
+        mSpacingAnimator.start();
+    }
 
-        int totalHeight = 0;
-        int lineWidth = 0;
-        int lineHeight = 0;
-        int lineCount = 1;
-        int childCount = mAdapter.getCount();
+    private void cancelSpacingAnimation() {
+        if (mSpacingAnimator != null) {
+            mSpacingAnimator.cancel();
+            mSpacingAnimator = null;
+        }
+    }
 
-        // 先移除所有现有的子视图
-        removeAllViews();
+    private void applySpacing(int horizontalSpacing, int verticalSpacing) {
+        if (horizontalSpacing == mHorizontalSpacing && verticalSpacing == mVerticalSpacing) {
+            return;
+        }
+        mHorizontalSpacing = horizontalSpacing;
+        mVerticalSpacing = verticalSpacing;
+        requestLayout();
+    }
 
-        if (childCount == 0) {
-            // 没有数据时设置最小高度
-            setMeasuredDimension(
-                    widthMode == MeasureSpec.EXACTLY ? widthSize : 0,
-                    heightMode == MeasureSpec.EXACTLY ? heightSize : 0
-            );
+    // 开启后数据或者 maxLines 变化时播放变化动画，默认关闭
+    public void setChangeAnimationsEnabled(boolean enabled) {
+        if (mChangeAnimationsEnabled == enabled) {
             return;
         }
+        mChangeAnimationsEnabled = enabled;
+        if (!enabled) {
+            for (int i = getChildCount() - 1; i >= 0; i--) {
+                View child = getChildAt(i);
+                child.animate().cancel();
+                resetAnimatedProperties(child);
+            }
+        }
+    }
 
-        // 添加普通标签
-        boolean needMoreView = false;
-        for (int i = 0; i < childCount; i++) {
-            View child = mAdapter.getView(i, this);
-            addView(child);
+    public boolean isChangeAnimationsEnabled() {
+        return mChangeAnimationsEnabled;
+    }
 
-            // 测量子视图
-            measureChild(child, widthMeasureSpec, heightMeasureSpec);
-            int childWidth = child.getMeasuredWidth();
-            int childHeight = child.getMeasuredHeight();
-
-            // 判断是否需要换行
-            if (lineWidth + childWidth > maxWidth && lineWidth > 0) {
-                // 换行
-                if (lineCount >= mMaxLines) {
-                    // 超过最大行数，移除当前视图
-                    removeViewAt(getChildCount() - 1);
-                    needMoreView = true;
-                    break;
-                }
+    public void setChangeAnimationDuration(long duration) {
+        mChangeAnimationDuration = duration;
+    }
 
-                totalHeight += lineHeight + mVerticalSpacing;
-                lineWidth = 0;
-                lineHeight = 0;
-                lineCount++;
-            }
+    public long getChangeAnimationDuration() {
+        return mChangeAnimationDuration;
+    }
 
-            // 更新当前行的宽度和高度
-            lineWidth += childWidth + (lineWidth > 0 ? mHorizontalSpacing : 0);
-            lineHeight = Math.max(lineHeight, childHeight);
+    // 开启虚拟化模式后只挂载可见区域附近的标签，适合放在 ScrollView 中展示大量标签
+    public void setVirtualized(boolean virtualized) {
+        if (mVirtualized == virtualized) {
+            return;
         }
-
-        // 添加MoreView
-        View moreView = mAdapter.getMoreView(this);
-        if (moreView != null && needMoreView) {
-            addView(moreView);
-            measureChild(moreView, widthMeasureSpec, heightMeasureSpec);
-            int moreWidth = moreView.getMeasuredWidth();
-            int moreHeight = moreView.getMeasuredHeight();
-
-            // 检查MoreView是否能放在当前行
-            if (lineWidth + (lineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth > maxWidth) {
-                // 当前行放不下，需要换行
-                if (lineCount < mMaxLines) {
-                    totalHeight += lineHeight + mVerticalSpacing;
-                    lineWidth = moreWidth;
-                    lineHeight = moreHeight;
-                    lineCount++;
-                } else {
-                    // 已达到最大行数，移除最后一个普通标签，为MoreView腾出空间
-                    if (getChildCount() > 1) {
-                        View lastChild = getChildAt(getChildCount() - 2);
-                        removeViewAt(getChildCount() - 2);
-                        lineWidth -= lastChild.getMeasuredWidth() + mHorizontalSpacing;
-                        // 重新检查MoreView是否能放下
-                        if (lineWidth + (lineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth <= maxWidth) {
-                            lineWidth += (lineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth;
-                            lineHeight = Math.max(lineHeight, moreHeight);
-                        } else {
-                            // 还是放不下，移除MoreView
-                            removeViewAt(getChildCount() - 1);
-                        }
-                    } else {
-                        // 没有普通标签可移除，移除MoreView
-                        removeViewAt(getChildCount() - 1);
-                    }
-                }
+        mVirtualized = virtualized;
+        if (isAttachedToWindow()) {
+            if (virtualized) {
+                getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
             } else {
-                // 当前行可以放下MoreView
-                lineWidth += (lineWidth > 0 ? mHorizontalSpacing : 0) + moreWidth;
-                lineHeight = Math.max(lineHeight, moreHeight);
+                getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
             }
         }
+        refreshChildViews();
+    }
 
-        totalHeight += lineHeight;
+    public boolean isVirtualized() {
+        return mVirtualized;
+    }
 
-        // 确保有最小高度
-        if (totalHeight == 0 && childCount > 0) {
-            totalHeight = lineHeight;
+    // 设置虚拟化模式下可见区域上下额外挂载的范围（像素）
+    public void setPrefetchMargin(int margin) {
+        mPrefetchMargin = margin;
+        if (mVirtualized) {
+            requestLayout();
         }
+    }
 
-        // 设置最终尺寸
-        int finalWidth = widthMode == MeasureSpec.EXACTLY ? widthSize :
-                (widthMode == MeasureSpec.AT_MOST ? Math.min(lineWidth, widthSize) : lineWidth);
-        int finalHeight = heightMode == MeasureSpec.EXACTLY ? heightSize :
-                (heightMode == MeasureSpec.AT_MOST ? Math.min(totalHeight, heightSize) : totalHeight);
-
-        // 计算最终高度
-        finalHeight = Math.max(finalHeight, getSuggestedMinimumHeight());
+    public int getPrefetchMargin() {
+        return mPrefetchMargin;
+    }
 
-        setMeasuredDimension(finalWidth, finalHeight);
+    public void setOnTagClickListener(OnTagClickListener listener) {
+        mOnTagClickListener = listener;
     }
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        if (mAdapter == null || getChildCount() == 0) {
-            return;
+    // 设置性能统计监听，每次测量和布局结束后回调耗时、绑定次数、视图创建和复用数量以及缓存命中情况
+    // 两次回调之间（比如数据通知、预取）的绑定计入下一次回调，设置为 null 关闭统计
+    public void setOnTagMetricsListener(OnTagMetricsListener listener) {
+        mMetricsListener = listener;
+        if (listener == null) {
+            mMetrics = null;
+        } else if (mMetrics == null) {
+            mMetrics = new TagMetrics();
+            mMetrics.reset(TagMetrics.PASS_MEASURE);
         }
+    }
 
-        int width = r - l;
-        int totalHeight = 0;
-        int lineWidth = 0;
-        int lineHeight = 0;
-        int lineCount = 1;
-        int childCount = getChildCount();
+    public void setTraceEnabled(boolean traceEnabled) {
+        mTraceEnabled = traceEnabled;
+    }
 
-        // 用于记录每行的子视图
-        java.util.List<java.util.List<View>> lines = new java.util.ArrayList<>();
-        java.util.List<View> currentLine = new java.util.ArrayList<>();
-        lines.add(currentLine);
+    public boolean isTraceEnabled() {
+        return mTraceEnabled;
+    }
 
-        // 第一次遍历，确定每行的子视图
-        for (int i = 0; i < childCount; i++) {
-            View child = getChildAt(i);
-            int childWidth = child.getMeasuredWidth();
-            int childHeight = child.getMeasuredHeight();
-
-            // 判断是否需要换行
-            if (lineWidth + childWidth > width && lineWidth > 0) {
-                // 换行
-                totalHeight += lineHeight + mVerticalSpacing;
-                lineWidth = 0;
-                lineHeight = 0;
-                lineCount++;
-
-                // 创建新行
-                currentLine = new java.util.ArrayList<>();
-                lines.add(currentLine);
-            }
-
-            // 添加到当前行
-            currentLine.add(child);
-
-            // 更新当前行的宽度和高度
-            lineWidth += childWidth + (lineWidth > 0 ? mHorizontalSpacing : 0);
-            lineHeight = Math.max(lineHeight, childHeight);
-        }
-
-        totalHeight += lineHeight;
-
-        // 第二次遍历，进行布局
-        int currentTop = 0;
-        for (java.util.List<View> line : lines) {
-            lineHeight = 0;
-            // 先计算行高
-            for (View child : line) {
-                lineHeight = Math.max(lineHeight, child.getMeasuredHeight());
-            }
-
-            int currentLeft = 0;
-            for (View child : line) {
-                int childWidth = child.getMeasuredWidth();
-                int childHeight = child.getMeasuredHeight();
-
-                // 垂直居中对齐
-                int top = currentTop + (lineHeight - childHeight) / 2;
-                int bottom = top + childHeight;
-
-                child.layout(currentLeft, top, currentLeft + childWidth, bottom);
-
-                // 设置标签点击事件
-                final int childIndex = indexOfChild(child);
-                if (childIndex < mAdapter.getCount()) {
-                    child.setOnClickListener(new OnClickListener() {
-                        @Override
-                        public void onClick(View v) {
-                            if (mOnTagClickListener != null) {
-                                mOnTagClickListener.onTagClick(v, childIndex);
-                            }
-                        }
-                    });
-                } else {
-                    // 这是MoreView
-                    child.setOnClickListener(mOnMoreClickListener);
-                }
+    // 设置显示范围变化的监听，比如只为会显示的标签加载数据
+    public void setOnOverflowChangedListener(OnOverflowChangedListener listener) {
+        mOnOverflowChangedListener = listener;
+    }
 
-                currentLeft += childWidth + mHorizontalSpacing;
-            }
+    // 最近一次测量后显示的标签数量，显示的总是位置 [0, getVisibleTagCount()) 范围内的标签
+    public int getVisibleTagCount() {
+        if (mTextTagRenderer.hasTexts() || (mAdapter != null && mAdapter.getCount() > 0)) {
+            return mFlowEngine.getVisibleCount();
+        }
+        return 0;
+    }
+
+    // 最近一次测量后因为超过最大行数（或者为"更多"视图腾出空间）没有显示的标签数量
+    public int getHiddenTagCount() {
+        int count = mTextTagRenderer.hasTexts() ? mTextTagRenderer.getCount() : (mAdapter == null ? 0 : mAdapter.getCount());
+        return Math.max(0, count - getVisibleTagCount());
+    }
+
+    // 最近一次测量后是否显示了"更多"视图
+    public boolean isMoreViewShown() {
+        return mMoreView != null && getHiddenTagCount() > 0 && mFlowEngine.isMoreViewShown();
+    }
+
+    public void setOnMoreClickListener(OnClickListener listener) {
+        mOnMoreClickListener = listener;
+        if (mMoreView != null) {
+            mMoreView.setOnClickListener(listener);
+        }
+    }
+
+    public void setAdapter(TagAdapter<?> adapter) {
+        if (adapter != null && mTextTagRenderer.hasTexts()) {
+            clearTextTags();
+        }
+        if (mAdapter != null) {
+            mAdapter.unregisterDataObserver(mDataObserver);
+        }
+        mAdapter = adapter;
+        if (mAdapter != null) {
+            mAdapter.registerDataObserver(mDataObserver);
+        }
+        mSelection.clear();
+        mSelectedIds.clear();
+        refreshChildViews();
+        applyPendingSavedState();
+    }
+
+    public TagAdapter<?> getAdapter() {
+        return mAdapter;
+    }
+
+    // 设置选择模式：CHOICE_MODE_NONE、CHOICE_MODE_SINGLE 或 CHOICE_MODE_MULTIPLE，切换时清空已选中的标签，并为每个被取消的位置回调 OnTagSelectionChangedListener
+    // 开启后点击标签会切换选中状态，再回调 OnTagClickListener
+    public void setChoiceMode(int choiceMode) {
+        if (choiceMode == mChoiceMode) {
+            return;
+        }
+        int[] cleared = getSelectedPositions();
+        mSelection.clear();
+        mSelectedIds.clear();
+        int tagChildCount = getTagChildCount();
+        for (int i = 0; i < tagChildCount; i++) {
+            // 退出选择模式时也恢复为未选中状态
+            mAdapter.onBindSelection(getChildAt(i), mFirstAttachedPosition + i, false);
+        }
+        mChoiceMode = choiceMode;
+        invalidate();
+        if (mOnTagSelectionChangedListener != null) {
+            for (int position : cleared) {
+                mOnTagSelectionChangedListener.onSelectionChanged(this, position, false);
+            }
+        }
+    }
+
+    public int getChoiceMode() {
+        return mChoiceMode;
+    }
+
+    // 多选模式下最多选中的数量，达到上限后点击未选中的标签不会生效
+    public void setMaxSelectedCount(int maxSelectedCount) {
+        mMaxSelectedCount = maxSelectedCount;
+    }
+
+    public int getMaxSelectedCount() {
+        return mMaxSelectedCount;
+    }
+
+    // 为 true 时不能取消最后一个选中的标签，比如必须选中一项的筛选条件
+    public void setSelectionRequired(boolean selectionRequired) {
+        mSelectionRequired = selectionRequired;
+    }
+
+    public boolean isSelectionRequired() {
+        return mSelectionRequired;
+    }
+
+    public void setOnTagSelectionChangedListener(OnTagSelectionChangedListener listener) {
+        mOnTagSelectionChangedListener = listener;
+    }
+
+    // 修改指定位置的选中状态，受选择模式和数量限制时返回 false，位置超出数据范围时抛出 IndexOutOfBoundsException
+    public boolean setTagSelected(int position, boolean selected) {
+        int count = mTextTagRenderer.hasTexts() ? mTextTagRenderer.getCount() : (mAdapter == null ? 0 : mAdapter.getCount());
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("position " + position + ", count " + count);
+        }
+        if (mChoiceMode == CHOICE_MODE_NONE || mSelection.get(position) == selected) {
+            return false;
+        }
+        if (selected) {
+            if (mChoiceMode == CHOICE_MODE_SINGLE) {
+                int previous = mSelection.nextSetBit(0);
+                if (previous >= 0) {
+                    updateSelection(previous, false);
+                }
+            } else if (mSelection.cardinality() >= mMaxSelectedCount) {
+                return false;
+            }
+        } else if (mSelectionRequired && mSelection.cardinality() == 1) {
+            return false;
+        }
+        updateSelection(position, selected);
+        return true;
+    }
+
+    public boolean isTagSelected(int position) {
+        return mSelection.get(position);
+    }
+
+    public int getSelectedCount() {
+        return mSelection.cardinality();
+    }
+
+    // 按位置从小到大返回所有选中的位置
+    public int[] getSelectedPositions() {
+        int[] positions = new int[mSelection.cardinality()];
+        int index = 0;
+        for (int i = mSelection.nextSetBit(0); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+            positions[index++] = i;
+        }
+        return positions;
+    }
+
+    // 取消所有选中，不受 selectionRequired 限制
+    public void clearSelection() {
+        for (int i = mSelection.nextSetBit(0); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+            updateSelection(i, false);
+        }
+    }
+
+    // 只更新对应标签的视图状态，绘制模式下重绘
+    private void updateSelection(int position, boolean selected) {
+        mSelection.set(position, selected);
+        if (mAdapter != null && mAdapter.hasStableIds()) {
+            if (selected) {
+                mSelectedIds.put(mAdapter.getItemId(position), Boolean.TRUE);
+            } else {
+                mSelectedIds.remove(mAdapter.getItemId(position));
+            }
+        }
+        View child = getAttachedChild(position);
+        if (child != null) {
+            mAdapter.onBindSelection(child, position, selected);
+        }
+        if (mTextTagRenderer.hasTexts()) {
+            invalidate();
+        }
+        if (mOnTagSelectionChangedListener != null) {
+            mOnTagSelectionChangedListener.onSelectionChanged(this, position, selected);
+        }
+    }
+
+    // 在 fromPosition 插入 count 个数据，之后的选中位置后移
+    private void offsetSelection(int fromPosition, int count) {
+        for (int i = mSelection.length() - 1; i >= fromPosition; i = mSelection.previousSetBit(i - 1)) {
+            mSelection.clear(i);
+            mSelection.set(i + count);
+        }
+    }
+
+    // 移除 [fromPosition, fromPosition + count) 的数据，之后的选中位置前移
+    private void removeSelection(int fromPosition, int count) {
+        mSelection.clear(fromPosition, fromPosition + count);
+        for (int i = mSelection.nextSetBit(fromPosition + count); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+            mSelection.clear(i);
+            mSelection.set(i - count);
+        }
+    }
+
+    private void moveSelection(int fromPosition, int toPosition) {
+        boolean selected = mSelection.get(fromPosition);
+        if (fromPosition < toPosition) {
+            for (int i = fromPosition; i < toPosition; i++) {
+                mSelection.set(i, mSelection.get(i + 1));
+            }
+        } else {
+            for (int i = fromPosition; i > toPosition; i--) {
+                mSelection.set(i, mSelection.get(i - 1));
+            }
+        }
+        mSelection.set(toPosition, selected);
+    }
+
+    // 移除数据后按剩下的选中位置重新记录 id
+    private void syncSelectedIds() {
+        if (mAdapter == null || !mAdapter.hasStableIds()) {
+            return;
+        }
+        mSelectedIds.clear();
+        for (int i = mSelection.nextSetBit(0); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+            mSelectedIds.put(mAdapter.getItemId(i), Boolean.TRUE);
+        }
+    }
+
+    // 整个数据集变化时按 id 找回选中的数据，不再存在的数据取消选中
+    private void remapSelectionByIds() {
+        mSelection.clear();
+        if (mSelectedIds.size() == 0) {
+            return;
+        }
+        int count = mAdapter.getCount();
+        for (int i = 0; i < count; i++) {
+            if (mSelectedIds.get(mAdapter.getItemId(i)) != null) {
+                mSelection.set(i);
+            }
+        }
+        syncSelectedIds();
+    }
+
+    // 整个数据集变化时保留仍然存在的位置
+    private void trimSelection(int itemCount) {
+        int length = mSelection.length();
+        if (length > itemCount) {
+            mSelection.clear(itemCount, length);
+        }
+    }
+
+    // 绘制模式：直接绘制文字标签，不创建任何子视图，适合只读的标签展示
+    // 所有标签共用 setTagBackground、setTagTextSize 等设置的样式，点击通过 OnTagClickListener 回调，回调中的 view 是 TagViewGroup 本身
+    // 会替换掉当前的适配器，传入 null 退出绘制模式；无障碍支持依赖 androidx.customview
+    public void setTextTags(List<? extends CharSequence> texts) {
+        if (texts == null) {
+            if (mTextTagRenderer.hasTexts()) {
+                clearTextTags();
+                requestLayout();
+            }
+            return;
+        }
+        if (mAdapter != null) {
+            setAdapter(null);
+        }
+        mTextTagRenderer.setTexts(texts);
+        mSelection.clear();
+        mSelectedIds.clear();
+        mPressedTextTag = -1;
+        setWillNotDraw(false);
+        if (mTextTagAccessibilityHelper == null) {
+            mTextTagAccessibilityHelper = TextTagAccessibilityHelper.attach(this);
+        } else {
+            mTextTagAccessibilityHelper.invalidateRoot();
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    private void clearTextTags() {
+        mTextTagRenderer.setTexts(null);
+        mPressedTextTag = -1;
+        mTouchOnTextTag = false;
+        setWillNotDraw(true);
+        if (mTextTagAccessibilityHelper != null) {
+            mTextTagAccessibilityHelper.detach();
+            mTextTagAccessibilityHelper = null;
+        }
+        invalidate();
+    }
+
+    // 绘制模式下所有文字标签共用的背景
+    public void setTagBackground(Drawable background) {
+        mTextTagRenderer.setBackground(background);
+        requestLayout();
+        invalidate();
+    }
+
+    // 绘制模式下文字标签的文字大小，单位为像素
+    public void setTagTextSize(float textSize) {
+        mTextTagRenderer.setTextSize(textSize);
+        requestLayout();
+        invalidate();
+    }
+
+    public void setTagTextColor(int color) {
+        mTextTagRenderer.setTextColor(color);
+        invalidate();
+    }
+
+    // 绘制模式下文字标签的内边距
+    public void setTagPadding(int horizontal, int vertical) {
+        mTextTagRenderer.setPadding(horizontal, vertical);
+        requestLayout();
+        invalidate();
+    }
+
+    // 所有标签共用的样式，同时作用于适配器创建的标签和绘制模式下的文字标签
+    // 背景通过 ConstantState 共享资源，文字颜色共用同一个 ColorStateList，选中的标签使用 state_activated 状态
+    // 修改样式后再调用一次即可生效：直接更新已挂载的标签，不会重新绑定数据；只修改文字颜色时只需要重绘
+    // 传入 null 之后新创建的标签不再应用样式，已经应用过样式的标签保持不变
+    public void setTagStyle(TagStyle style) {
+        boolean relayout = style != mTagStyle
+                || (style != null && style.getLayoutGeneration() != mTagStyleLayoutGeneration);
+        mTagStyle = style;
+        if (style != null) {
+            mTagStyleLayoutGeneration = style.getLayoutGeneration();
+            applyTagStyle(mTextTagRenderer, style);
+            for (int i = 0, count = getTagChildCount(); i < count; i++) {
+                View child = getChildAt(i);
+                applyTagStyle(child, (LayoutParams) child.getLayoutParams());
+            }
+        }
+        if (relayout) {
+            // 标签尺寸可能变化，已测量的尺寸只能作为估算值，预计算的结果也不再可用
+            for (int i = 0; i < mItemCount && i < mItemSizeStates.length; i++) {
+                if (mItemSizeStates[i] == SIZE_MEASURED) {
+                    mItemSizeStates[i] = SIZE_ESTIMATED;
+                }
+            }
+            clearPrecomputedLayout();
+            if (mAdapter instanceof TextTagAdapter) {
+                ((TextTagAdapter<?>) mAdapter).invalidateTextMetrics();
+            }
+            markLinesDirty(0);
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    public TagStyle getTagStyle() {
+        return mTagStyle;
+    }
+
+    private static void applyTagStyle(TextTagRenderer renderer, TagStyle style) {
+        if (style.getBackground() != null) {
+            renderer.setBackground(style.getBackground());
+        }
+        if (style.getTextColor() != null) {
+            renderer.setTextColor(style.getTextColor());
+        }
+        if (style.getTextSize() >= 0) {
+            renderer.setTextSize(style.getTextSize());
+        }
+        if (style.getTypeface() != null) {
+            renderer.setTypeface(style.getTypeface());
+        }
+        if (style.getPaddingHorizontal() >= 0 || style.getPaddingVertical() >= 0) {
+            renderer.setPadding(
+                    style.getPaddingHorizontal() >= 0 ? style.getPaddingHorizontal() : renderer.getPaddingHorizontal(),
+                    style.getPaddingVertical() >= 0 ? style.getPaddingVertical() : renderer.getPaddingVertical());
+        }
+    }
+
+    // 按上一次测量的约束提前创建并测量标签，之后约束不变的正式测量可以直接复用结果
+    // 在 RecyclerView 中可以在 onBindViewHolder 里调用，让列表项预取时就完成标签的创建和测量
+    // 预取之后在数据通知之外修改了标签内容时，需要调用 requestLayout 让正式测量不再复用预取的结果
+    public void prefetch() {
+        if (mAdapter == null || mCachedWidthSpec == -1 || !isLayoutRequested()) {
+            return;
+        }
+        if (mAdapter instanceof TextTagAdapter) {
+            ((TextTagAdapter<?>) mAdapter).precompute(this);
+        }
+        measure(mCachedWidthSpec, mCachedHeightSpec);
+    }
+
+    // 使用 TagLayoutPrecomputer 预先计算的第 index 组结果，测量时直接使用其中的标签尺寸
+    // 需要在设置数据之后调用，数据发生变化或者可用宽度与预计算时不同时自动失效
+    public void setPrecomputedLayout(TagLayoutCache layout, int index) {
+        mPrecomputedLayout = layout;
+        mPrecomputedIndex = index;
+        mPrecomputedApplied = false;
+        markLinesDirty(0);
+        requestLayout();
+    }
+
+    private void clearPrecomputedLayout() {
+        mPrecomputedLayout = null;
+        mPrecomputedIndex = -1;
+        mPrecomputedApplied = false;
+    }
+
+    // 设置后，回收池中没有可用视图的标签交给 inflater 在后台创建，测量时先使用估算尺寸，
+    // 已经创建好的标签先显示，其余的标签在视图送达后再挂载；只对非虚拟化模式生效
+    public void setTagViewInflater(TagViewInflater inflater) {
+        mTagViewInflater = inflater;
+        requestLayout();
+    }
+
+    public TagViewInflater getTagViewInflater() {
+        return mTagViewInflater;
+    }
+
+    // 设置标签视图回收池，多个 TagViewGroup 可以共享同一个回收池
+    public void setRecycledViewPool(TagViewPool pool) {
+        mRecycledViewPool = pool;
+    }
+
+    public TagViewPool getRecycledViewPool() {
+        if (mRecycledViewPool == null) {
+            mRecycledViewPool = new TagViewPool();
+        }
+        return mRecycledViewPool;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mVirtualized) {
+            getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        removeCallbacks(mRelayoutRunnable);
+        // 离开窗口时直接跳到动画的目标间距
+        if (mSpacingAnimator != null) {
+            ValueAnimator animator = mSpacingAnimator;
+            mSpacingAnimator = null;
+            animator.end();
+        }
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        return new LayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    public void requestLayout() {
+        // 在父类构造过程中也会被调用，这里只能访问基本类型的字段
+        mMeasureGeneration++;
+        super.requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMetrics == null && !mTraceEnabled) {
+            measureWithCache(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        beginPass(TagMetrics.PASS_MEASURE, "TagViewGroup#onMeasure");
+        measureWithCache(widthMeasureSpec, heightMeasureSpec);
+        endPass();
+    }
+
+    private void measureWithCache(int widthMeasureSpec, int heightMeasureSpec) {
+        // 约束、数据和属性都没有变化（比如父容器连续测量两次），直接返回上一次的结果
+        int generation = mMeasureGeneration;
+        if (widthMeasureSpec == mLastWidthMeasureSpec && heightMeasureSpec == mLastHeightMeasureSpec
+                && generation == mLastMeasureGeneration) {
+            if (mMetrics != null) {
+                mMetrics.mMeasureCacheHit = true;
+            }
+            setMeasuredDimension(mLastMeasuredWidth, mLastMeasuredHeight);
+            return;
+        }
+        measureFlow(widthMeasureSpec, heightMeasureSpec);
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
+        mLastMeasureGeneration = generation;
+        mLastMeasuredWidth = getMeasuredWidth();
+        mLastMeasuredHeight = getMeasuredHeight();
+    }
+
+    private void measureFlow(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mAdapter == null && !mTextTagRenderer.hasTexts()) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+        // 宽度不受限制时（比如在水平滚动容器中）按固有宽度排布：
+        // 设置了 intrinsicMaxWidth 时在该宽度内换行，否则所有标签排成一行
+        int maxWidth = widthMode != MeasureSpec.UNSPECIFIED ? widthSize
+                : (mIntrinsicMaxWidth > 0 ? mIntrinsicMaxWidth : Integer.MAX_VALUE);
+
+        if (mTextTagRenderer.hasTexts()) {
+            measureTextTags(maxWidth, widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        int itemCount = mAdapter.getCount();
+
+        if (itemCount == 0) {
+            mFlowEngine.clear();
+            // 没有数据时设置最小高度
+            setMeasuredDimension(
+                    widthMode == MeasureSpec.EXACTLY ? widthSize : 0,
+                    heightMode == MeasureSpec.EXACTLY ? heightSize : 0
+            );
+            return;
+        }
+
+        ensureItemCapacity(itemCount);
+
+        // 子视图的测量约束变化时，已测量的尺寸只能作为估算值
+        if (widthMeasureSpec != mCachedWidthSpec || heightMeasureSpec != mCachedHeightSpec) {
+            mCachedWidthSpec = widthMeasureSpec;
+            mCachedHeightSpec = heightMeasureSpec;
+            for (int i = 0; i < itemCount; i++) {
+                if (mItemSizeStates[i] == SIZE_MEASURED) {
+                    mItemSizeStates[i] = SIZE_ESTIMATED;
+                }
+            }
+            mPrecomputedApplied = false;
+            markLinesDirty(0);
+        }
+
+        // 可用宽度或水平间距变化时所有换行结果失效，标签尺寸仍然有效，只需要重新换行
+        if (maxWidth != mFlowEngine.getMaxWidth() || mHorizontalSpacing != mFlowEngine.getHorizontalSpacing()) {
+            mFlowEngine.setMaxWidth(maxWidth);
+            mFlowEngine.setHorizontalSpacing(mHorizontalSpacing);
+            markLinesDirty(0);
+        }
+
+        // 预计算结果与当前数据和宽度一致时直接使用其中的标签尺寸，不再测量标签内容
+        if (!mPrecomputedApplied && mPrecomputedLayout != null
+                && mPrecomputedLayout.matches(mPrecomputedIndex, itemCount, maxWidth)) {
+            mPrecomputedLayout.copyItemSizes(mPrecomputedIndex, mItemWidths, mItemHeights);
+            Arrays.fill(mItemSizeStates, 0, itemCount, SIZE_MEASURED);
+            mPrecomputedApplied = true;
+            markLinesDirty(0);
+        }
+
+        // 已排布的标签自行请求了重新测量（比如文字变化），尺寸变化时从它所在的行开始重排
+        int scanEnd = Math.min(mFlowEngine.getFlowEnd(), Math.min(mFirstDirtyPosition, itemCount));
+        int tagChildCount = getTagChildCount();
+        for (int i = 0; i < tagChildCount; i++) {
+            int position = mFirstAttachedPosition + i;
+            if (position >= scanEnd) {
+                break;
+            }
+            View child = getChildAt(i);
+            if (child.isLayoutRequested() && measureTagChild(child, position, widthMeasureSpec, heightMeasureSpec)) {
+                markLinesDirty(position);
+                break;
+            }
+        }
+
+        // 垂直间距只影响行的纵坐标，不需要重新换行
+        mFlowEngine.setVerticalSpacing(mVerticalSpacing);
+
+        boolean flowValid = mFirstDirtyPosition >= itemCount && mMaxLines == mFlowEngine.getMaxLines()
+                && (mFlowEngine.getFlowEnd() == itemCount || mFlowEngine.isTruncated());
+        if (!flowValid) {
+            // 从第一个变化的标签所在的行开始重新换行，之前的行直接复用
+            mFlowEngine.setMaxLines(mMaxLines);
+            // 虚拟化模式下未挂载的标签、异步创建模式下等待视图的标签都按估算尺寸换行，
+            // 这样设置了 maxLines 时只为放得下的标签请求视图，显示数量也接近最终结果
+            if (mVirtualized || mTagViewInflater != null) {
+                updateEstimatedItemSize(itemCount, widthMeasureSpec, heightMeasureSpec);
+            }
+            mInflateNeeds.clear();
+            mFlowEngine.flow(mFirstDirtyPosition, mItemWidths, mItemHeights, itemCount, mItemMeasurer);
+            mFirstDirtyPosition = Integer.MAX_VALUE;
+            if (mInflateNeeds.size() > 0) {
+                requestInflations();
+            }
+            if (mMetrics != null) {
+                mMetrics.mFlowedLineCount += mFlowEngine.getFlowedLineCount();
+            }
+
+            // 截断模式下回收不再显示的标签
+            int flowEnd = mFlowEngine.getFlowEnd();
+            int attachedEnd = mFirstAttachedPosition + getTagChildCount();
+            if (!mVirtualized && attachedEnd > flowEnd) {
+                removeTagChildren(flowEnd - mFirstAttachedPosition, attachedEnd - flowEnd);
+            }
+        } else if (mFlowRestored && !mVirtualized) {
+            attachRestoredChildren(widthMeasureSpec, heightMeasureSpec);
+        }
+        mFlowRestored = false;
+
+        placeMoreView(itemCount, widthMeasureSpec, heightMeasureSpec);
+        setFlowMeasuredDimension(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    // 换行结果来自保存的状态时按保存的尺寸挂载并精确测量显示的标签，不再计算标签内容的尺寸
+    private void attachRestoredChildren(int widthMeasureSpec, int heightMeasureSpec) {
+        int flowEnd = mFlowEngine.getFlowEnd();
+        int attachedEnd = mFirstAttachedPosition + getTagChildCount();
+        if (attachedEnd > flowEnd) {
+            removeTagChildren(flowEnd - mFirstAttachedPosition, attachedEnd - flowEnd);
+            return;
+        }
+        mInflateNeeds.clear();
+        for (int i = attachedEnd; i < flowEnd; i++) {
+            resolveItemSize(i, widthMeasureSpec, heightMeasureSpec);
+        }
+        if (mInflateNeeds.size() > 0) {
+            requestInflations();
+        }
+    }
+
+    // 放置"更多"视图：先按换行结束位置绑定隐藏数量，放置后为了腾出空间多隐藏了标签时重新绑定和测量，
+    // 数字位数变化可能再影响一次宽度，最多调整三次；"更多"视图本身一直保留在子视图中
+    private void placeMoreView(int itemCount, int widthMeasureSpec, int heightMeasureSpec) {
+        FlowLayoutEngine engine = mFlowEngine;
+        if (mMoreView == null || !engine.isTruncated()) {
+            engine.placeMoreView(mItemWidths, mItemHeights, -1, 0);
+            return;
+        }
+        int hiddenCount = itemCount - engine.getFlowEnd();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (hiddenCount != mMoreViewHiddenCount) {
+                mMoreViewHiddenCount = hiddenCount;
+                mAdapter.onBindMoreView(mMoreView, hiddenCount);
+            }
+            measureChild(mMoreView, widthMeasureSpec, heightMeasureSpec);
+            engine.placeMoreView(mItemWidths, mItemHeights, mMoreView.getMeasuredWidth(), mMoreView.getMeasuredHeight());
+            hiddenCount = itemCount - engine.getVisibleCount();
+            if (hiddenCount == mMoreViewHiddenCount) {
+                break;
+            }
+        }
+    }
+
+    // 按换行结果的内容尺寸设置最终尺寸
+    private void setFlowMeasuredDimension(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+        int contentWidth = mFlowEngine.getContentWidth();
+        int totalHeight = mFlowEngine.getContentHeight();
+
+        // 设置最终尺寸
+        int finalWidth = widthMode == MeasureSpec.EXACTLY ? widthSize :
+                (widthMode == MeasureSpec.AT_MOST ? Math.min(contentWidth, widthSize) : contentWidth);
+        int finalHeight = heightMode == MeasureSpec.EXACTLY ? heightSize :
+                (heightMode == MeasureSpec.AT_MOST ? Math.min(totalHeight, heightSize) : totalHeight);
+
+        // 计算最终高度
+        finalHeight = Math.max(finalHeight, getSuggestedMinimumHeight());
+
+        setMeasuredDimension(finalWidth, finalHeight);
+    }
+
+    // 绘制模式下的测量：文字标签的尺寸直接由缓存的 StaticLayout 得到，没有子视图需要测量
+    private void measureTextTags(int maxWidth, int widthMeasureSpec, int heightMeasureSpec) {
+        int count = mTextTagRenderer.getCount();
+        ensureItemCapacity(count);
+        mTextTagRenderer.measure(maxWidth, mItemWidths, mItemHeights);
+        mFlowEngine.setMaxWidth(maxWidth);
+        mFlowEngine.setHorizontalSpacing(mHorizontalSpacing);
+        mFlowEngine.setVerticalSpacing(mVerticalSpacing);
+        mFlowEngine.setMaxLines(mMaxLines);
+        mFlowEngine.compute(mItemWidths, mItemHeights, count, -1, 0);
+        setFlowMeasuredDimension(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    // 确定标签尺寸：已挂载的标签直接测量，普通模式下按顺序挂载新的标签，
+    // 虚拟化模式下未挂载的标签以及异步创建模式下等待视图的标签使用缓存的尺寸、适配器的估算值或者平均尺寸
+    private void resolveItemSize(int position, int widthMeasureSpec, int heightMeasureSpec) {
+        View child = getAttachedChild(position);
+        if (child == null && !mVirtualized) {
+            child = mTagViewInflater == null ? obtainView(position) : obtainInflatedView(position);
+            if (child != null) {
+                addViewInLayout(child, position - mFirstAttachedPosition, child.getLayoutParams(), true);
+            }
+        }
+        if (child != null) {
+            measureTagChild(child, position, widthMeasureSpec, heightMeasureSpec);
+        } else if (mItemSizeStates[position] == SIZE_UNKNOWN) {
+            int estimatedWidth = mAdapter.estimateItemWidth(position, this);
+            if (estimatedWidth >= 0) {
+                int estimatedHeight = mAdapter.estimateItemHeight(position, this);
+                mItemWidths[position] = estimatedWidth;
+                mItemHeights[position] = estimatedHeight >= 0 ? estimatedHeight : mEstimatedItemHeight;
+                mItemSizeStates[position] = SIZE_ESTIMATED;
+            } else {
+                mItemWidths[position] = mEstimatedItemWidth;
+                mItemHeights[position] = mEstimatedItemHeight;
+            }
+        }
+    }
+
+    // 异步创建模式：回收池中有同类型的视图时直接绑定，否则记录缺少的视图，本次测量使用估算尺寸
+    // 有标签在等待视图时，之后的标签也先不挂载，保证挂载的标签位置连续
+    private View obtainInflatedView(int position) {
+        int viewType = mAdapter.getItemViewType(position);
+        boolean waiting = mInflateNeeds.size() > 0;
+        if (!mTagViewInflater.canInflate(viewType)) {
+            return waiting ? null : obtainView(position);
+        }
+        if (!waiting && getRecycledViewPool().getRecycledViewCount(viewType) > 0) {
+            return obtainView(position);
+        }
+        mInflateNeeds.put(viewType, mInflateNeeds.get(viewType) + 1);
+        return null;
+    }
+
+    // 为本次测量中缺少的视图发起异步创建，送达的视图放在回收池中，所以一次最多请求回收池剩余的容量
+    private void requestInflations() {
+        TagViewPool pool = getRecycledViewPool();
+        for (int i = 0; i < mInflateNeeds.size(); i++) {
+            int viewType = mInflateNeeds.keyAt(i);
+            int pending = mPendingInflations.get(viewType);
+            int capacity = pool.getMaxRecycledViews(viewType) - pool.getRecycledViewCount(viewType);
+            int count = Math.min(mInflateNeeds.valueAt(i), capacity) - pending;
+            for (int j = 0; j < count; j++) {
+                mTagViewInflater.inflate(viewType, this, mInflateCallback);
+            }
+            if (count > 0) {
+                mPendingInflations.put(viewType, pending + count);
+            }
+        }
+        mInflateNeeds.clear();
+    }
+
+    // 测量标签并更新尺寸缓存，尺寸发生变化时返回 true
+    // 使用预计算结果或者适配器声明了尺寸稳定时，按缓存的尺寸精确测量，不再计算标签内容的尺寸
+    private boolean measureTagChild(View child, int position, int widthMeasureSpec, int heightMeasureSpec) {
+        if ((mPrecomputedApplied || mAdapter.hasStableSizes()) && mItemSizeStates[position] == SIZE_MEASURED) {
+            if (mMetrics != null) {
+                mMetrics.mSizeCacheHitCount++;
+            }
+            child.measure(MeasureSpec.makeMeasureSpec(mItemWidths[position], MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mItemHeights[position], MeasureSpec.EXACTLY));
+            return false;
+        }
+        if (mMetrics != null) {
+            mMetrics.mSizeCacheMissCount++;
+        }
+        measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        int width = child.getMeasuredWidth();
+        int height = child.getMeasuredHeight();
+        boolean changed = width != mItemWidths[position] || height != mItemHeights[position];
+        mItemWidths[position] = width;
+        mItemHeights[position] = height;
+        mItemSizeStates[position] = SIZE_MEASURED;
+        return changed;
+    }
+
+    // 用已测量标签的平均尺寸估算未测量的标签，一个都没有时临时测量第一个标签
+    // 临时创建的标签放回回收池，异步创建模式下第一个标签会直接复用它，其余的标签仍然在后台创建
+    private void updateEstimatedItemSize(int itemCount, int widthMeasureSpec, int heightMeasureSpec) {
+        long widthSum = 0;
+        long heightSum = 0;
+        int measuredCount = 0;
+        for (int i = 0; i < itemCount; i++) {
+            if (mItemSizeStates[i] != SIZE_UNKNOWN) {
+                widthSum += mItemWidths[i];
+                heightSum += mItemHeights[i];
+                measuredCount++;
+            }
+        }
+        if (measuredCount == 0) {
+            View child = obtainView(0);
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+            mItemWidths[0] = child.getMeasuredWidth();
+            mItemHeights[0] = child.getMeasuredHeight();
+            mItemSizeStates[0] = SIZE_MEASURED;
+            getRecycledViewPool().putRecycledView(((LayoutParams) child.getLayoutParams()).viewType, child);
+            widthSum = mItemWidths[0];
+            heightSum = mItemHeights[0];
+            measuredCount = 1;
+        }
+        mEstimatedItemWidth = (int) (widthSum / measuredCount);
+        mEstimatedItemHeight = (int) (heightSum / measuredCount);
+    }
+
+    private void ensureItemCapacity(int count) {
+        if (count > mItemWidths.length) {
+            int capacity = Math.max(count, mItemWidths.length * 2);
+            mItemWidths = Arrays.copyOf(mItemWidths, capacity);
+            mItemHeights = Arrays.copyOf(mItemHeights, capacity);
+            mItemSizeStates = Arrays.copyOf(mItemSizeStates, capacity);
+        }
+    }
+
+    // 标记从指定位置开始的换行结果失效
+    private void markLinesDirty(int position) {
+        mFirstDirtyPosition = Math.min(mFirstDirtyPosition, position);
+    }
+
+    // 根据当前可见区域挂载或回收标签，挂载范围有变化时返回 true
+    private boolean updateVirtualWindow() {
+        int start = 0;
+        int end = 0;
+        FlowLayoutEngine engine = mFlowEngine;
+        if (engine.getLineCount() > 0 && getLocalVisibleRect(mVisibleRect)) {
+            int margin = mPrefetchMargin >= 0 ? mPrefetchMargin : mVisibleRect.height() / 2;
+            int startLine = engine.findLineAt(mVisibleRect.top - margin);
+            int endLine = engine.findLineAt(mVisibleRect.bottom + margin);
+            start = Math.min(engine.getLineStart(startLine), engine.getVisibleCount());
+            end = endLine < engine.getLineCount() - 1 ? engine.getLineStart(endLine + 1) : engine.getVisibleCount();
+        }
+
+        int first = mFirstAttachedPosition;
+        int attachedEnd = first + getTagChildCount();
+        if (start == first && end == attachedEnd) {
+            return false;
+        }
+
+        // 回收离开窗口的标签
+        if (end <= first || start >= attachedEnd) {
+            recycleTagChildren(0, attachedEnd - first);
+            first = start;
+            attachedEnd = start;
+        } else {
+            if (attachedEnd > end) {
+                recycleTagChildren(end - first, attachedEnd - end);
+                attachedEnd = end;
+            }
+            if (first < start) {
+                recycleTagChildren(0, start - first);
+                first = start;
+            }
+        }
+
+        // 挂载进入窗口的标签
+        boolean sizeChanged = false;
+        for (int i = first - 1; i >= start; i--) {
+            sizeChanged |= attachVirtualChild(i, 0);
+        }
+        mFirstAttachedPosition = Math.min(first, start);
+        for (int i = attachedEnd; i < end; i++) {
+            sizeChanged |= attachVirtualChild(i, i - mFirstAttachedPosition);
+        }
+
+        if (sizeChanged) {
+            removeCallbacks(mRelayoutRunnable);
+            post(mRelayoutRunnable);
+        }
+        return true;
+    }
+
+    // 挂载并测量一个标签，实际尺寸与估算值不同时返回 true
+    private boolean attachVirtualChild(int position, int index) {
+        View child = obtainView(position);
+        addViewInLayout(child, index, child.getLayoutParams(), true);
+        boolean changed = measureTagChild(child, position, mCachedWidthSpec, mCachedHeightSpec);
+        if (changed) {
+            markLinesDirty(position);
+        }
+        return changed;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mMetrics == null && !mTraceEnabled) {
+            layoutFlow();
+        } else {
+            beginPass(TagMetrics.PASS_LAYOUT, "TagViewGroup#onLayout");
+            layoutFlow();
+            endPass();
+        }
+        dispatchOverflowChanged();
+    }
+
+    // 显示数量或隐藏数量与上一次回调不同时才通知
+    private void dispatchOverflowChanged() {
+        int visibleCount = getVisibleTagCount();
+        int hiddenCount = getHiddenTagCount();
+        if (visibleCount == mReportedVisibleCount && hiddenCount == mReportedHiddenCount) {
+            return;
+        }
+        mReportedVisibleCount = visibleCount;
+        mReportedHiddenCount = hiddenCount;
+        if (mOnOverflowChangedListener != null) {
+            mOnOverflowChangedListener.onOverflowChanged(this, visibleCount, hiddenCount);
+        }
+    }
+
+    private void layoutFlow() {
+        if (mAdapter == null || mFlowEngine.getLineCount() == 0) {
+            return;
+        }
+        if (mVirtualized) {
+            updateVirtualWindow();
+        }
+        layoutTagChildren();
+    }
+
+    // 直接使用测量阶段缓存的换行结果进行布局，布局过程中不创建任何对象
+    private void layoutTagChildren() {
+        boolean animate = canAnimateChanges();
+        FlowLayoutEngine engine = mFlowEngine;
+        int tagChildCount = getTagChildCount();
+        int visibleCount = engine.getVisibleCount();
+        int lastLine = engine.getLineCount() - 1;
+        int line = engine.findLineIndex(mFirstAttachedPosition);
+        for (int i = 0; i < tagChildCount; i++) {
+            View child = getChildAt(i);
+            int position = mFirstAttachedPosition + i;
+            if (position >= visibleCount) {
+                // 被截断的标签不参与排布
+                child.layout(0, 0, 0, 0);
+                continue;
+            }
+            while (line < lastLine && engine.getLineStart(line + 1) <= position) {
+                line++;
+            }
+            int oldLeft = child.getLeft();
+            int oldTop = child.getTop();
+            boolean wasShown = child.isLaidOut() && child.getWidth() > 0;
+            layoutChildInLine(child, engine.getItemLeft(position), engine.getLineTop(line), engine.getLineHeight(line));
+            if (animate) {
+                animateChildChange(child, oldLeft, oldTop, wasShown);
+            }
+        }
+
+        if (mMoreView != null) {
+            if (engine.isMoreViewShown()) {
+                int oldLeft = mMoreView.getLeft();
+                int oldTop = mMoreView.getTop();
+                boolean wasShown = mMoreView.isLaidOut() && mMoreView.getWidth() > 0;
+                layoutChildInLine(mMoreView, engine.getMoreViewLeft(), engine.getLineTop(lastLine), engine.getLineHeight(lastLine));
+                if (animate) {
+                    animateChildChange(mMoreView, oldLeft, oldTop, wasShown);
+                }
+            } else {
+                mMoreView.layout(0, 0, 0, 0);
+            }
+        }
+        mTagsLaidOut = true;
+    }
+
+    // 根据布局前后的位置启动动画：新出现的标签淡入，位置变化的标签从当前绘制的位置平移到新位置
+    private void animateChildChange(View child, int oldLeft, int oldTop, boolean wasShown) {
+        if (!wasShown) {
+            child.setTranslationX(0f);
+            child.setTranslationY(0f);
+            child.setAlpha(0f);
+            child.animate().alpha(1f).setDuration(mChangeAnimationDuration).start();
+            return;
+        }
+        float dx = oldLeft + child.getTranslationX() - child.getLeft();
+        float dy = oldTop + child.getTranslationY() - child.getTop();
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        child.setTranslationX(dx);
+        child.setTranslationY(dy);
+        child.animate().translationX(0f).translationY(0f).setDuration(mChangeAnimationDuration).start();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        FlowLayoutEngine engine = mFlowEngine;
+        if (!mTextTagRenderer.hasTexts() || engine.getLineCount() == 0) {
+            return;
+        }
+        // 只绘制与裁剪区域相交的行
+        if (!canvas.getClipBounds(mClipBounds)) {
+            return;
+        }
+        int visibleCount = engine.getVisibleCount();
+        int lineCount = engine.getLineCount();
+        for (int line = engine.findLineAt(mClipBounds.top); line < lineCount; line++) {
+            if (engine.getLineTop(line) > mClipBounds.bottom) {
+                break;
+            }
+            int end = line < lineCount - 1 ? engine.getLineStart(line + 1) : visibleCount;
+            for (int i = engine.getLineStart(line); i < end && i < visibleCount; i++) {
+                getTextTagBounds(i, line, mTextTagBounds);
+                mTextTagRenderer.draw(canvas, i, mTextTagBounds, i == mPressedTextTag, mSelection.get(i));
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mTextTagRenderer.hasTexts()) {
+            return super.onTouchEvent(event);
+        }
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mPressedTextTag = findTextTagAt((int) event.getX(), (int) event.getY());
+            mTouchOnTextTag = mPressedTextTag >= 0;
+            if (mTouchOnTextTag) {
+                invalidate();
+            }
+        }
+        if (!mTouchOnTextTag) {
+            return super.onTouchEvent(event);
+        }
+        switch (action) {
+            case MotionEvent.ACTION_MOVE:
+                // 手指移出按下的标签后取消点击
+                if (mPressedTextTag >= 0 && findTextTagAt((int) event.getX(), (int) event.getY()) != mPressedTextTag) {
+                    mPressedTextTag = -1;
+                    invalidate();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mPressedTextTag >= 0) {
+                    int position = mPressedTextTag;
+                    mPressedTextTag = -1;
+                    invalidate();
+                    performTextTagClick(position);
+                }
+                mTouchOnTextTag = false;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                if (mPressedTextTag >= 0) {
+                    mPressedTextTag = -1;
+                    invalidate();
+                }
+                mTouchOnTextTag = false;
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        if (mTextTagAccessibilityHelper != null && mTextTagAccessibilityHelper.dispatchHoverEvent(event)) {
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    // 查找坐标所在的文字标签，没有时返回 -1
+    int findTextTagAt(int x, int y) {
+        FlowLayoutEngine engine = mFlowEngine;
+        if (!mTextTagRenderer.hasTexts() || engine.getLineCount() == 0) {
+            return -1;
+        }
+        int line = engine.findLineAt(y);
+        int lineTop = engine.getLineTop(line);
+        if (y < lineTop || y >= lineTop + engine.getLineHeight(line)) {
+            return -1;
+        }
+        int visibleCount = engine.getVisibleCount();
+        int end = line < engine.getLineCount() - 1 ? engine.getLineStart(line + 1) : visibleCount;
+        for (int i = engine.getLineStart(line); i < end && i < visibleCount; i++) {
+            int left = engine.getItemLeft(i);
+            if (x >= left && x < left + mItemWidths[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int getTextTagVisibleCount() {
+        return mTextTagRenderer.hasTexts() ? mFlowEngine.getVisibleCount() : 0;
+    }
+
+    CharSequence getTextTag(int position) {
+        return mTextTagRenderer.getText(position);
+    }
+
+    void getTextTagBounds(int position, Rect outBounds) {
+        getTextTagBounds(position, mFlowEngine.findLineIndex(position), outBounds);
+    }
+
+    // 文字标签在行内垂直居中，与子视图的排布方式一致
+    private void getTextTagBounds(int position, int line, Rect outBounds) {
+        int left = mFlowEngine.getItemLeft(position);
+        int top = mFlowEngine.getLineTop(line) + (mFlowEngine.getLineHeight(line) - mItemHeights[position]) / 2;
+        outBounds.set(left, top, left + mItemWidths[position], top + mItemHeights[position]);
+    }
+
+    void performTextTagClick(int position) {
+        playSoundEffect(SoundEffectConstants.CLICK);
+        if (mChoiceMode != CHOICE_MODE_NONE) {
+            setTagSelected(position, !mSelection.get(position));
+        }
+        if (mOnTagClickListener != null) {
+            mOnTagClickListener.onTagClick(this, position);
+        }
+        if (mTextTagAccessibilityHelper != null) {
+            mTextTagAccessibilityHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+        }
+    }
+
+    // 在行内放置子视图并垂直居中对齐
+    private void layoutChildInLine(View child, int left, int lineTop, int lineHeight) {
+        int childWidth = child.getMeasuredWidth();
+        int childHeight = child.getMeasuredHeight();
+        int top = lineTop + (lineHeight - childHeight) / 2;
+        child.layout(left, top, left + childWidth, top + childHeight);
+    }
+
+    // 保存选中状态，适配器有稳定 id 时同时保存最近一次的标签尺寸，尺寸也稳定时再保存换行结果，需要为 TagViewGroup 设置 android:id
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.selection = mSelection.toLongArray();
+        boolean stableIds = mAdapter != null && mAdapter.hasStableIds();
+        if (stableIds) {
+            state.selectedIds = new long[mSelection.cardinality()];
+            int index = 0;
+            for (int i = mSelection.nextSetBit(0); i >= 0; i = mSelection.nextSetBit(i + 1)) {
+                state.selectedIds[index++] = mAdapter.getItemId(i);
+            }
+        }
+        int itemCount = mAdapter == null ? 0 : mItemCount;
+        if (stableIds && itemCount > 0 && itemCount <= MAX_SAVED_ITEM_SIZES && mCachedWidthSpec != -1) {
+            state.widthSpec = mCachedWidthSpec;
+            state.heightSpec = mCachedHeightSpec;
+            state.itemWidths = Arrays.copyOf(mItemWidths, itemCount);
+            state.itemHeights = Arrays.copyOf(mItemHeights, itemCount);
+            state.itemSizeStates = Arrays.copyOf(mItemSizeStates, itemCount);
+            state.itemIds = new long[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                state.itemIds[i] = mAdapter.getItemId(i);
+            }
+            FlowLayoutEngine engine = mFlowEngine;
+            if (mAdapter.hasStableSizes() && mFirstDirtyPosition >= itemCount && engine.getLineCount() > 0) {
+                int lineCount = engine.getLineCount();
+                state.lineStarts = new int[lineCount];
+                state.lineTops = new int[lineCount];
+                for (int line = 0; line < lineCount; line++) {
+                    state.lineStarts[line] = engine.getLineStart(line);
+                    state.lineTops[line] = engine.getLineTop(line);
+                }
+                state.flowEnd = engine.getFlowEnd();
+                state.truncated = engine.isTruncated();
+                state.maxWidth = engine.getMaxWidth();
+                state.horizontalSpacing = engine.getHorizontalSpacing();
+                state.verticalSpacing = engine.getVerticalSpacing();
+                state.maxLines = engine.getMaxLines();
+            }
+        }
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        mPendingSavedState = savedState;
+        applyPendingSavedState();
+    }
+
+    // 适配器有数据后恢复保存的状态：有稳定 id 时按 id 匹配数据，否则选中状态在数量范围内按位置恢复
+    // 同一个 id 的内容可能已经变化，恢复的标签尺寸一般只作为估算值，挂载的标签仍然会重新测量；
+    // 适配器声明了尺寸稳定并且数据的 id 和顺序都与保存时相同时，直接使用保存的尺寸和换行结果
+    private void applyPendingSavedState() {
+        SavedState state = mPendingSavedState;
+        if (state == null || mAdapter == null || mAdapter.getCount() == 0) {
+            return;
+        }
+        mPendingSavedState = null;
+        int count = mAdapter.getCount();
+        boolean stableIds = mAdapter.hasStableIds();
+
+        // 保存时的 id 对应的位置
+        LongSparseArray<Integer> savedPositions = null;
+        if (stableIds && state.itemIds != null) {
+            savedPositions = new LongSparseArray<>(state.itemIds.length);
+            for (int i = 0; i < state.itemIds.length; i++) {
+                savedPositions.put(state.itemIds[i], i);
+            }
+        }
+
+        mSelection.clear();
+        mSelectedIds.clear();
+        if (stableIds && state.selectedIds != null) {
+            for (long id : state.selectedIds) {
+                mSelectedIds.put(id, Boolean.TRUE);
+            }
+            remapSelectionByIds();
+        } else if (state.selection != null) {
+            mSelection.or(BitSet.valueOf(state.selection));
+            trimSelection(count);
+        }
+        int tagChildCount = getTagChildCount();
+        for (int i = 0; i < tagChildCount; i++) {
+            bindSelection(getChildAt(i), mFirstAttachedPosition + i);
+        }
+
+        if (savedPositions != null && state.itemWidths != null) {
+            ensureItemCapacity(count);
+            boolean sameItems = mAdapter.hasStableSizes() && count == state.itemIds.length;
+            for (int i = 0; i < count; i++) {
+                long id = mAdapter.getItemId(i);
+                sameItems &= i < state.itemIds.length && id == state.itemIds[i];
+                Integer savedPosition = savedPositions.get(id);
+                if (savedPosition == null || state.itemSizeStates[savedPosition] == SIZE_UNKNOWN) {
+                    mItemSizeStates[i] = SIZE_UNKNOWN;
+                    continue;
+                }
+                mItemWidths[i] = state.itemWidths[savedPosition];
+                mItemHeights[i] = state.itemHeights[savedPosition];
+                mItemSizeStates[i] = SIZE_ESTIMATED;
+            }
+            mCachedWidthSpec = state.widthSpec;
+            mCachedHeightSpec = state.heightSpec;
+            if (sameItems) {
+                // 测量过的尺寸仍然有效，挂载时按缓存的尺寸精确测量
+                System.arraycopy(state.itemSizeStates, 0, mItemSizeStates, 0, count);
+            }
+            if (sameItems && state.lineStarts != null && state.horizontalSpacing == mHorizontalSpacing
+                    && state.verticalSpacing == mVerticalSpacing && state.maxLines == mMaxLines) {
+                restoreFlow(state);
+            } else {
+                markLinesDirty(0);
+            }
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    // 使用保存的换行结果，测量约束和可用宽度不变时第一次测量不需要重新换行
+    private void restoreFlow(SavedState state) {
+        FlowLayoutEngine engine = mFlowEngine;
+        engine.setMaxWidth(state.maxWidth);
+        engine.setHorizontalSpacing(state.horizontalSpacing);
+        engine.setVerticalSpacing(state.verticalSpacing);
+        engine.setMaxLines(state.maxLines);
+        engine.restore(state.lineStarts, state.lineTops, state.flowEnd, state.truncated, mItemWidths, mItemHeights);
+        mFirstDirtyPosition = Integer.MAX_VALUE;
+        mFlowRestored = true;
+    }
+
+    static class SavedState extends BaseSavedState {
+        long[] selection;
+        long[] selectedIds;
+        int widthSpec;
+        int heightSpec;
+        int[] itemWidths;
+        int[] itemHeights;
+        byte[] itemSizeStates;
+        long[] itemIds;
+        // 换行结果，只在适配器的尺寸稳定时保存
+        int[] lineStarts;
+        int[] lineTops;
+        int flowEnd;
+        boolean truncated;
+        int maxWidth;
+        int horizontalSpacing;
+        int verticalSpacing;
+        int maxLines;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            selection = in.createLongArray();
+            selectedIds = in.createLongArray();
+            widthSpec = in.readInt();
+            heightSpec = in.readInt();
+            itemWidths = in.createIntArray();
+            itemHeights = in.createIntArray();
+            itemSizeStates = in.createByteArray();
+            itemIds = in.createLongArray();
+            lineStarts = in.createIntArray();
+            lineTops = in.createIntArray();
+            flowEnd = in.readInt();
+            truncated = in.readInt() != 0;
+            maxWidth = in.readInt();
+            horizontalSpacing = in.readInt();
+            verticalSpacing = in.readInt();
+            maxLines = in.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeLongArray(selection);
+            out.writeLongArray(selectedIds);
+            out.writeInt(widthSpec);
+            out.writeInt(heightSpec);
+            out.writeIntArray(itemWidths);
+            out.writeIntArray(itemHeights);
+            out.writeByteArray(itemSizeStates);
+            out.writeLongArray(itemIds);
+            out.writeIntArray(lineStarts);
+            out.writeIntArray(lineTops);
+            out.writeInt(flowEnd);
+            out.writeInt(truncated ? 1 : 0);
+            out.writeInt(maxWidth);
+            out.writeInt(horizontalSpacing);
+            out.writeInt(verticalSpacing);
+            out.writeInt(maxLines);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+        // 子视图对应的数据位置
+        int position = -1;
+        // 子视图的类型，用于放回回收池
+        int viewType = 0;
+        // 是否是"更多"视图
+        boolean isMoreView = false;
+        // 适配器有稳定 id 时绑定的数据 id
+        long itemId = TagAdapter.NO_ID;
+        // 最近一次应用到子视图上的样式及其版本
+        TagStyle style;
+        int styleGeneration = -1;
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
 
-            currentTop += lineHeight + mVerticalSpacing;
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
         }
     }
 }
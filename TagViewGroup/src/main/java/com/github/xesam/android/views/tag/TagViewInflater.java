@@ -0,0 +1,66 @@
+package com.github.xesam.android.views.tag;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
+
+// 在后台线程中从 XML 布局创建标签视图，创建好的视图放入 TagViewGroup 的回收池，
+// 之后作为 convertView 交给适配器的 getView 绑定数据，适配器需要支持复用 convertView
+// 与 AsyncLayoutInflater 一样，布局中有只能在主线程创建的视图时会回退到主线程创建
+public class TagViewInflater {
+
+    interface Callback {
+        void onInflated(int viewType, View view);
+    }
+
+    private final LayoutInflater mInflater;
+    private final Executor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // 视图类型对应的布局资源
+    private final SparseIntArray mLayouts = new SparseIntArray();
+
+    // executor 可以是 Executors.newSingleThreadExecutor()，也可以在多个 TagViewGroup 之间共享
+    public TagViewInflater(Context context, Executor executor) {
+        mInflater = LayoutInflater.from(context).cloneInContext(context);
+        mExecutor = executor;
+    }
+
+    // 指定视图类型使用的布局，没有指定布局的视图类型仍然由适配器同步创建
+    public void registerLayout(int viewType, int layoutRes) {
+        mLayouts.put(viewType, layoutRes);
+    }
+
+    boolean canInflate(int viewType) {
+        return mLayouts.indexOfKey(viewType) >= 0;
+    }
+
+    // 在后台创建一个视图，完成后在主线程回调；parent 只用于生成布局参数
+    void inflate(final int viewType, final ViewGroup parent, final Callback callback) {
+        final int layoutRes = mLayouts.get(viewType);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                View view = null;
+                try {
+                    view = mInflater.inflate(layoutRes, parent, false);
+                } catch (RuntimeException e) {
+                    // 回退到主线程创建
+                }
+                final View inflated = view;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        View result = inflated != null ? inflated : mInflater.inflate(layoutRes, parent, false);
+                        callback.onInflated(viewType, result);
+                    }
+                });
+            }
+        });
+    }
+}
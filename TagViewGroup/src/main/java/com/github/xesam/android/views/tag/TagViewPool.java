@@ -0,0 +1,68 @@
+package com.github.xesam.android.views.tag;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+// 标签视图回收池，按视图类型缓存已脱离父容器的标签视图
+// 同一个回收池可以在多个 TagViewGroup 之间共享，比如 RecyclerView 的各个列表项
+public class TagViewPool {
+    private static final int DEFAULT_MAX_SCRAP = 32;
+
+    private final SparseArray<ArrayList<View>> mScrap = new SparseArray<>();
+    private final SparseIntArray mMaxScrap = new SparseIntArray();
+
+    // 设置指定视图类型最多缓存的视图数量
+    public void setMaxRecycledViews(int viewType, int max) {
+        mMaxScrap.put(viewType, max);
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if (scrap != null) {
+            while (scrap.size() > max) {
+                scrap.remove(scrap.size() - 1);
+            }
+        }
+    }
+
+    // 获取指定视图类型最多缓存的视图数量
+    public int getMaxRecycledViews(int viewType) {
+        return mMaxScrap.get(viewType, DEFAULT_MAX_SCRAP);
+    }
+
+    // 取出一个指定类型的视图，没有时返回 null
+    public View getRecycledView(int viewType) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if (scrap == null || scrap.isEmpty()) {
+            return null;
+        }
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    // 放入一个已经脱离父容器的视图，超过上限时直接丢弃
+    public void putRecycledView(int viewType, View view) {
+        if (view == null || view.getParent() != null) {
+            return;
+        }
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<>();
+            mScrap.put(viewType, scrap);
+        }
+        if (scrap.size() >= mMaxScrap.get(viewType, DEFAULT_MAX_SCRAP)) {
+            return;
+        }
+        scrap.add(view);
+    }
+
+    // 获取指定类型当前缓存的视图数量
+    public int getRecycledViewCount(int viewType) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        return scrap == null ? 0 : scrap.size();
+    }
+
+    // 清空所有缓存的视图
+    public void clear() {
+        mScrap.clear();
+    }
+}
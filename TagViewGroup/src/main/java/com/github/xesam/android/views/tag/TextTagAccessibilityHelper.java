@@ -0,0 +1,77 @@
+package com.github.xesam.android.views.tag;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+
+import androidx.core.view.ViewCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+import java.util.List;
+
+// 绘制模式下把每个文字标签作为虚拟视图提供给无障碍服务
+// 依赖 androidx.customview，只有使用 setTextTags 时才会加载
+class TextTagAccessibilityHelper extends ExploreByTouchHelper {
+    private final TagViewGroup mHost;
+    private final Rect mTempBounds = new Rect();
+
+    private TextTagAccessibilityHelper(TagViewGroup host) {
+        super(host);
+        mHost = host;
+    }
+
+    static TextTagAccessibilityHelper attach(TagViewGroup host) {
+        TextTagAccessibilityHelper helper = new TextTagAccessibilityHelper(host);
+        ViewCompat.setAccessibilityDelegate(host, helper);
+        return helper;
+    }
+
+    // 退出绘制模式时移除代理，恢复子视图组成的无障碍节点树
+    void detach() {
+        invalidateRoot();
+        ViewCompat.setAccessibilityDelegate(mHost, null);
+    }
+
+    @Override
+    protected int getVirtualViewAt(float x, float y) {
+        int position = mHost.findTextTagAt((int) x, (int) y);
+        return position >= 0 ? position : INVALID_ID;
+    }
+
+    @Override
+    protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+        int visibleCount = mHost.getTextTagVisibleCount();
+        for (int i = 0; i < visibleCount; i++) {
+            virtualViewIds.add(i);
+        }
+    }
+
+    @Override
+    protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+        if (virtualViewId >= mHost.getTextTagVisibleCount()) {
+            // 数据已经变化，虚拟视图不再显示
+            mTempBounds.setEmpty();
+            node.setText("");
+            node.setBoundsInParent(mTempBounds);
+            return;
+        }
+        mHost.getTextTagBounds(virtualViewId, mTempBounds);
+        node.setText(mHost.getTextTag(virtualViewId));
+        node.setBoundsInParent(mTempBounds);
+        node.setClickable(true);
+        if (mHost.getChoiceMode() != TagViewGroup.CHOICE_MODE_NONE) {
+            node.setCheckable(true);
+            node.setChecked(mHost.isTagSelected(virtualViewId));
+        }
+        node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+    }
+
+    @Override
+    protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+        if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < mHost.getTextTagVisibleCount()) {
+            mHost.performTextTagClick(virtualViewId);
+            return true;
+        }
+        return false;
+    }
+}
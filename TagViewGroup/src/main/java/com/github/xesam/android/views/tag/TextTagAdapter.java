@@ -0,0 +1,200 @@
+package com.github.xesam.android.views.tag;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// 纯文字标签的适配器，在后台线程中预先计算文字排版（PrecomputedTextCompat）和标签宽度，
+// TagViewGroup 设置了 maxLines 时用缓存的宽度估算哪些标签会被截断，绑定时直接使用预计算的文字
+// 依赖 androidx.core，使用方需要引入 appcompat 或 androidx.core
+public abstract class TextTagAdapter<T> extends TagAdapter<T> {
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static Executor sDefaultExecutor;
+
+    private Executor mExecutor;
+    // 每个标签的宽度以及预计算的文字，mGeneration 用于丢弃数据变化之前的计算结果
+    private int[] mTextWidths;
+    private PrecomputedTextCompat[] mPrecomputedTexts;
+    private int mTextHeight = -1;
+    private int mGeneration = 0;
+    private boolean mMeasuring = false;
+    private boolean mDispatchingResult = false;
+
+    // 获取指定位置标签的文字
+    protected CharSequence getText(int position) {
+        return String.valueOf(getItem(position));
+    }
+
+    // 创建标签使用的 TextView，所有标签需要使用相同的文字样式，才能复用预计算的结果
+    protected TextView onCreateTextView(ViewGroup parent) {
+        return new TextView(parent.getContext());
+    }
+
+    // 文字绑定完成后调用，可以在这里设置和位置相关的状态
+    protected void onBindTextView(TextView textView, int position) {
+    }
+
+    // 设置后台计算使用的线程池，默认使用一个共享的单线程线程池
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    @Override
+    protected View getView(int position, ViewGroup parent) {
+        TextView textView = onCreateTextView(parent);
+        applyTagStyle(textView, parent);
+        bindText(textView, position);
+        return textView;
+    }
+
+    @Override
+    protected View getView(int position, View convertView, ViewGroup parent) {
+        if (!(convertView instanceof TextView)) {
+            return getView(position, parent);
+        }
+        bindText((TextView) convertView, position);
+        return convertView;
+    }
+
+    private void bindText(TextView textView, int position) {
+        PrecomputedTextCompat precomputedText = mPrecomputedTexts != null && position < mPrecomputedTexts.length
+                ? mPrecomputedTexts[position] : null;
+        if (precomputedText != null) {
+            try {
+                TextViewCompat.setPrecomputedText(textView, precomputedText);
+            } catch (IllegalArgumentException e) {
+                // TextView 的文字样式和预计算时不一致
+                textView.setText(getText(position));
+            }
+        } else {
+            textView.setText(getText(position));
+        }
+        onBindTextView(textView, position);
+    }
+
+    @Override
+    protected int estimateItemWidth(int position, ViewGroup parent) {
+        if (mTextWidths == null) {
+            precompute(parent);
+            return -1;
+        }
+        return position < mTextWidths.length ? mTextWidths[position] : -1;
+    }
+
+    @Override
+    protected int estimateItemHeight(int position, ViewGroup parent) {
+        return mTextWidths == null ? -1 : mTextHeight;
+    }
+
+    // 在后台线程中计算所有标签的文字排版和宽度，完成后刷新已经挂载的标签
+    // 在 RecyclerView 中可以在绑定列表项时提前调用，把文字测量移出 UI 线程
+    public void precompute(ViewGroup parent) {
+        if (mTextWidths != null || mMeasuring) {
+            return;
+        }
+        mMeasuring = true;
+
+        // 用一个原型 TextView 获取文字样式、内边距以及空文字时的最小尺寸
+        TextView prototype = onCreateTextView(parent);
+        applyTagStyle(prototype, parent);
+        prototype.setText("");
+        int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        prototype.measure(unspecified, unspecified);
+        final int minWidth = prototype.getMeasuredWidth();
+        final int textHeight = prototype.getMeasuredHeight();
+        final int horizontalPadding = prototype.getCompoundPaddingLeft() + prototype.getCompoundPaddingRight();
+        final TextPaint paint = new TextPaint(prototype.getPaint());
+        final PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(prototype);
+
+        final int count = getCount();
+        final CharSequence[] texts = new CharSequence[count];
+        for (int i = 0; i < count; i++) {
+            texts[i] = getText(i);
+        }
+
+        final int generation = mGeneration;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] widths = new int[count];
+                final PrecomputedTextCompat[] precomputedTexts = new PrecomputedTextCompat[count];
+                for (int i = 0; i < count; i++) {
+                    precomputedTexts[i] = PrecomputedTextCompat.create(texts[i], params);
+                    int textWidth = (int) Math.ceil(Layout.getDesiredWidth(precomputedTexts[i], paint));
+                    widths[i] = Math.max(minWidth, textWidth + horizontalPadding);
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyTextMetrics(generation, widths, precomputedTexts, textHeight);
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyTextMetrics(int generation, int[] widths, PrecomputedTextCompat[] precomputedTexts, int textHeight) {
+        mMeasuring = false;
+        if (generation != mGeneration) {
+            // 计算期间数据发生了变化，结果作废，下一次测量时重新计算
+            return;
+        }
+        mTextWidths = widths;
+        mPrecomputedTexts = precomputedTexts;
+        mTextHeight = textHeight;
+
+        // 让已经挂载的标签换上预计算的文字，并用缓存的宽度重新换行
+        mDispatchingResult = true;
+        notifyItemRangeChanged(0, widths.length);
+        mDispatchingResult = false;
+    }
+
+    // 新创建的 TextView 先应用 TagViewGroup 的共用样式，预计算的文字才能与绑定时的文字样式一致
+    private static void applyTagStyle(TextView textView, ViewGroup parent) {
+        if (parent instanceof TagViewGroup) {
+            TagStyle style = ((TagViewGroup) parent).getTagStyle();
+            if (style != null) {
+                style.apply(textView);
+            }
+        }
+    }
+
+    // 数据变化时在 TagViewGroup 重新绑定标签之前失效，避免把旧数据的预计算文字绑定到新数据上
+    @Override
+    void onDataChanging() {
+        invalidateTextMetrics();
+    }
+
+    // 样式变化时 TagViewGroup 也会调用，之前计算的宽度和预计算的文字都不再可用
+    void invalidateTextMetrics() {
+        if (mDispatchingResult) {
+            return;
+        }
+        mGeneration++;
+        mTextWidths = null;
+        mPrecomputedTexts = null;
+        mTextHeight = -1;
+    }
+
+    private Executor getExecutor() {
+        if (mExecutor != null) {
+            return mExecutor;
+        }
+        synchronized (TextTagAdapter.class) {
+            if (sDefaultExecutor == null) {
+                sDefaultExecutor = Executors.newSingleThreadExecutor();
+            }
+            return sDefaultExecutor;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.xesam.android.views.tag;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+// 绘制模式下的文字标签：不创建子视图，所有标签共用同一个背景 Drawable 和 TextPaint，
+// 每个标签的文字排版缓存为 StaticLayout，只有可用宽度变化导致文字需要截断时才重新生成
+class TextTagRenderer {
+    private static final int[] STATE_NORMAL = {android.R.attr.state_enabled};
+    private static final int[] STATE_PRESSED = {android.R.attr.state_enabled, android.R.attr.state_pressed};
+    private static final int[] STATE_ACTIVATED = {android.R.attr.state_enabled, android.R.attr.state_activated};
+    private static final int[] STATE_ACTIVATED_PRESSED = {android.R.attr.state_enabled, android.R.attr.state_activated,
+            android.R.attr.state_pressed};
+
+    private final TextPaint mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+    private Drawable mBackground;
+    private ColorStateList mTextColor = ColorStateList.valueOf(Color.BLACK);
+    private int mPaddingHorizontal = 0;
+    private int mPaddingVertical = 0;
+
+    private CharSequence[] mTexts;
+    // 文字不换行时的宽度，-1 表示还没有计算
+    private int[] mTextWidths;
+    private StaticLayout[] mLayouts;
+
+    boolean hasTexts() {
+        return mTexts != null;
+    }
+
+    int getCount() {
+        return mTexts == null ? 0 : mTexts.length;
+    }
+
+    CharSequence getText(int position) {
+        return mTexts[position];
+    }
+
+    void setTexts(List<? extends CharSequence> texts) {
+        if (texts == null) {
+            mTexts = null;
+            mTextWidths = null;
+            mLayouts = null;
+            return;
+        }
+        mTexts = texts.toArray(new CharSequence[0]);
+        mTextWidths = new int[mTexts.length];
+        mLayouts = new StaticLayout[mTexts.length];
+        invalidateLayouts();
+    }
+
+    void setTextSize(float textSize) {
+        mPaint.setTextSize(textSize);
+        invalidateLayouts();
+    }
+
+    void setTextColor(int color) {
+        setTextColor(ColorStateList.valueOf(color));
+    }
+
+    void setTextColor(ColorStateList color) {
+        // 颜色不影响排版，StaticLayout 绘制时使用当前的画笔颜色
+        mTextColor = color;
+    }
+
+    void setTypeface(Typeface typeface) {
+        mPaint.setTypeface(typeface);
+        invalidateLayouts();
+    }
+
+    void setBackground(Drawable background) {
+        mBackground = background;
+    }
+
+    void setPadding(int horizontal, int vertical) {
+        mPaddingHorizontal = horizontal;
+        mPaddingVertical = vertical;
+    }
+
+    int getPaddingHorizontal() {
+        return mPaddingHorizontal;
+    }
+
+    int getPaddingVertical() {
+        return mPaddingVertical;
+    }
+
+    private void invalidateLayouts() {
+        if (mTexts != null) {
+            Arrays.fill(mTextWidths, -1);
+            Arrays.fill(mLayouts, null);
+        }
+    }
+
+    // 计算每个标签的尺寸，文字超过可用宽度时截断并显示省略号
+    void measure(int maxWidth, int[] widths, int[] heights) {
+        int available = Math.max(0, maxWidth - mPaddingHorizontal * 2);
+        int minWidth = mBackground == null ? 0 : mBackground.getMinimumWidth();
+        int minHeight = mBackground == null ? 0 : mBackground.getMinimumHeight();
+        for (int i = 0; i < mTexts.length; i++) {
+            int textWidth = Math.min(getTextWidth(i), available);
+            StaticLayout layout = mLayouts[i];
+            if (layout == null || layout.getWidth() != textWidth) {
+                layout = createLayout(i, textWidth);
+                mLayouts[i] = layout;
+            }
+            widths[i] = Math.min(Math.max(textWidth + mPaddingHorizontal * 2, minWidth), maxWidth);
+            heights[i] = Math.max(layout.getHeight() + mPaddingVertical * 2, minHeight);
+        }
+    }
+
+    // 文字不换行、不截断时标签的宽度
+    int getIntrinsicWidth(int position) {
+        int minWidth = mBackground == null ? 0 : mBackground.getMinimumWidth();
+        return Math.max(getTextWidth(position) + mPaddingHorizontal * 2, minWidth);
+    }
+
+    private int getTextWidth(int position) {
+        if (mTextWidths[position] < 0) {
+            mTextWidths[position] = (int) Math.ceil(Layout.getDesiredWidth(mTexts[position], mPaint));
+        }
+        return mTextWidths[position];
+    }
+
+    private StaticLayout createLayout(int position, int width) {
+        CharSequence text = mTexts[position];
+        if (mTextWidths[position] > width) {
+            text = TextUtils.ellipsize(text, mPaint, width, TextUtils.TruncateAt.END);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return StaticLayout.Builder.obtain(text, 0, text.length(), mPaint, width)
+                    .setIncludePad(false)
+                    .build();
+        }
+        return createLayoutCompat(text, width);
+    }
+
+    // M 之前只能使用已经废弃的构造方法
+    @SuppressWarnings("deprecation")
+    private StaticLayout createLayoutCompat(CharSequence text, int width) {
+        return new StaticLayout(text, mPaint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    }
+
+    // 在 bounds 范围内绘制背景，文字居中；选中的标签使用 activated 状态的背景
+    void draw(Canvas canvas, int position, Rect bounds, boolean pressed, boolean selected) {
+        int[] state = selected ? (pressed ? STATE_ACTIVATED_PRESSED : STATE_ACTIVATED)
+                : (pressed ? STATE_PRESSED : STATE_NORMAL);
+        if (mBackground != null) {
+            mBackground.setState(state);
+            mBackground.setBounds(bounds);
+            mBackground.draw(canvas);
+        }
+        mPaint.setColor(mTextColor.getColorForState(state, mTextColor.getDefaultColor()));
+        StaticLayout layout = mLayouts[position];
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left + (bounds.width() - layout.getWidth()) / 2f,
+                bounds.top + (bounds.height() - layout.getHeight()) / 2f);
+        layout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
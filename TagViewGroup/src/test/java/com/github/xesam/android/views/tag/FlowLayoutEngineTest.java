@@ -0,0 +1,162 @@
+package com.github.xesam.android.views.tag;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlowLayoutEngineTest {
+    private FlowLayoutEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new FlowLayoutEngine();
+        engine.setMaxWidth(100);
+        engine.setHorizontalSpacing(10);
+        engine.setVerticalSpacing(5);
+    }
+
+    @Test
+    public void flow_wrapsLines() {
+        int[] widths = {40, 40, 40, 30};
+        int[] heights = {20, 30, 20, 20};
+        engine.compute(widths, heights, 4, -1, 0);
+
+        assertEquals(2, engine.getLineCount());
+        assertEquals(0, engine.getLineStart(0));
+        assertEquals(2, engine.getLineStart(1));
+        assertEquals(35, engine.getLineTop(1));
+        assertEquals(50, engine.getItemLeft(1));
+        assertEquals(50, engine.getItemLeft(3));
+        assertEquals(4, engine.getVisibleCount());
+        assertFalse(engine.isTruncated());
+        assertEquals(90, engine.getContentWidth());
+        assertEquals(55, engine.getContentHeight());
+    }
+
+    @Test
+    public void flow_truncatesAtMaxLines() {
+        engine.setMaxLines(1);
+        int[] widths = {40, 40, 40};
+        int[] heights = {20, 20, 20};
+        engine.compute(widths, heights, 3, -1, 0);
+
+        assertEquals(1, engine.getLineCount());
+        assertTrue(engine.isTruncated());
+        assertEquals(2, engine.getVisibleCount());
+        assertEquals(20, engine.getContentHeight());
+    }
+
+    @Test
+    public void placeMoreView_hidesLastTagWhenNeeded() {
+        engine.setMaxLines(1);
+        int[] widths = {40, 40, 40};
+        int[] heights = {20, 20, 20};
+        engine.compute(widths, heights, 3, 30, 24);
+
+        assertTrue(engine.isMoreViewShown());
+        assertEquals(1, engine.getVisibleCount());
+        assertEquals(50, engine.getMoreViewLeft());
+        assertEquals(24, engine.getLineHeight(0));
+        assertEquals(80, engine.getContentWidth());
+    }
+
+    @Test
+    public void placeMoreView_hidesSeveralTagsInOnePass() {
+        engine.setMaxLines(1);
+        int[] widths = {25, 25, 25, 25};
+        int[] heights = {20, 20, 20, 20};
+        engine.compute(widths, heights, 4, 60, 20);
+
+        assertTrue(engine.isMoreViewShown());
+        assertEquals(1, engine.getVisibleCount());
+        assertEquals(35, engine.getMoreViewLeft());
+        assertEquals(95, engine.getContentWidth());
+    }
+
+    @Test
+    public void placeMoreView_keepsTagsWhenMoreViewIsTooWide() {
+        engine.setMaxLines(1);
+        int[] widths = {40, 40, 40};
+        int[] heights = {20, 20, 20};
+        engine.compute(widths, heights, 3, 120, 20);
+
+        assertFalse(engine.isMoreViewShown());
+        assertEquals(2, engine.getVisibleCount());
+    }
+
+    @Test
+    public void setVerticalSpacing_updatesLineTops() {
+        int[] widths = {60, 60, 60};
+        int[] heights = {20, 20, 20};
+        engine.compute(widths, heights, 3, -1, 0);
+        engine.setVerticalSpacing(10);
+
+        assertEquals(30, engine.getLineTop(1));
+        assertEquals(60, engine.getLineTop(2));
+        assertEquals(80, engine.getContentHeight());
+    }
+
+    @Test
+    public void flow_reusesLinesBeforeDirtyPosition() {
+        int[] widths = {60, 60, 60};
+        int[] heights = {20, 20, 20};
+        engine.compute(widths, heights, 3, -1, 0);
+
+        widths[2] = 20;
+        final int[] firstMeasured = {-1};
+        engine.flow(2, widths, heights, 3, new FlowLayoutEngine.ItemMeasurer() {
+            @Override
+            public void measureItem(int position) {
+                if (firstMeasured[0] < 0) {
+                    firstMeasured[0] = position;
+                }
+            }
+
+            @Override
+            public int estimateItemWidth(int position) {
+                return -1;
+            }
+        });
+        engine.placeMoreView(widths, heights, -1, 0);
+
+        assertEquals(2, firstMeasured[0]);
+        assertEquals(3, engine.getLineCount());
+        assertEquals(1, engine.getFlowedLineCount());
+        assertEquals(20, engine.getLineWidth(2));
+    }
+
+    @Test
+    public void restore_rebuildsSavedLines() {
+        engine.setMaxLines(2);
+        int[] widths = {40, 40, 40, 30, 50};
+        int[] heights = {20, 30, 20, 20, 20};
+        engine.compute(widths, heights, 5, 30, 24);
+        int lineCount = engine.getLineCount();
+        int[] lineStarts = new int[lineCount];
+        int[] lineTops = new int[lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            lineStarts[line] = engine.getLineStart(line);
+            lineTops[line] = engine.getLineTop(line);
+        }
+
+        FlowLayoutEngine restored = new FlowLayoutEngine();
+        restored.setMaxWidth(100);
+        restored.setHorizontalSpacing(10);
+        restored.setVerticalSpacing(5);
+        restored.setMaxLines(2);
+        restored.restore(lineStarts, lineTops, engine.getFlowEnd(), engine.isTruncated(), widths, heights);
+        restored.placeMoreView(widths, heights, 30, 24);
+
+        assertEquals(0, restored.getFlowedLineCount());
+        assertEquals(engine.getLineCount(), restored.getLineCount());
+        assertEquals(engine.getVisibleCount(), restored.getVisibleCount());
+        assertEquals(engine.isMoreViewShown(), restored.isMoreViewShown());
+        assertEquals(engine.getMoreViewLeft(), restored.getMoreViewLeft());
+        assertEquals(engine.getContentWidth(), restored.getContentWidth());
+        assertEquals(engine.getContentHeight(), restored.getContentHeight());
+        for (int i = 0; i < engine.getVisibleCount(); i++) {
+            assertEquals(engine.getItemLeft(i), restored.getItemLeft(i));
+        }
+    }
+}
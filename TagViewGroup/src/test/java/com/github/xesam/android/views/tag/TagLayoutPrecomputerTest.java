@@ -0,0 +1,106 @@
+package com.github.xesam.android.views.tag;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class TagLayoutPrecomputerTest {
+    private static final TagLayoutPrecomputer.SizeMeasurer<String> MEASURER = new TagLayoutPrecomputer.SizeMeasurer<String>() {
+        @Override
+        public int measureWidth(String item) {
+            return item.length() * 10;
+        }
+
+        @Override
+        public int measureHeight(String item) {
+            return 20;
+        }
+    };
+
+    @Test
+    public void compute_matchesSerialResult() throws Exception {
+        List<List<String>> datasets = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<String> tags = new ArrayList<>();
+            for (int j = 0; j < i % 7; j++) {
+                tags.add("tag" + j + (j % 2 == 0 ? "" : "long"));
+            }
+            datasets.add(tags);
+        }
+
+        TagLayoutPrecomputer precomputer = new TagLayoutPrecomputer();
+        precomputer.setMaxWidth(100);
+        precomputer.setHorizontalSpacing(10);
+        precomputer.setVerticalSpacing(5);
+        precomputer.setMaxLines(2);
+        TagLayoutCache serial = precomputer.compute(datasets, MEASURER);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            precomputer.setExecutor(executor);
+            precomputer.setParallelism(4);
+            TagLayoutCache parallel = precomputer.compute(datasets, MEASURER);
+            assertEquals(serial.getCount(), parallel.getCount());
+            for (int i = 0; i < serial.getCount(); i++) {
+                assertEquals(serial.getHeight(i), parallel.getHeight(i));
+                assertEquals(serial.getVisibleCount(i), parallel.getVisibleCount(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void compute_runsRejectedChunksInline() throws Exception {
+        List<List<String>> datasets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            datasets.add(Arrays.asList("tag", "tag" + i, "longtag"));
+        }
+
+        TagLayoutPrecomputer precomputer = new TagLayoutPrecomputer();
+        precomputer.setMaxWidth(100);
+        precomputer.setHorizontalSpacing(10);
+        TagLayoutCache serial = precomputer.compute(datasets, MEASURER);
+
+        // 拒绝所有任务的线程池，compute 不应该一直等待
+        precomputer.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        precomputer.setParallelism(4);
+        TagLayoutCache rejected = precomputer.compute(datasets, MEASURER);
+        for (int i = 0; i < serial.getCount(); i++) {
+            assertEquals(serial.getHeight(i), rejected.getHeight(i));
+            assertEquals(serial.getVisibleCount(i), rejected.getVisibleCount(i));
+        }
+    }
+
+    @Test
+    public void compute_reportsHeightAndVisibleCount() throws Exception {
+        TagLayoutPrecomputer precomputer = new TagLayoutPrecomputer();
+        precomputer.setMaxWidth(100);
+        precomputer.setHorizontalSpacing(10);
+        precomputer.setVerticalSpacing(5);
+        precomputer.setMaxLines(1);
+        List<List<String>> datasets = new ArrayList<>();
+        datasets.add(Arrays.asList("aaaa", "bbbb", "cccc"));
+        datasets.add(new ArrayList<String>());
+        TagLayoutCache cache = precomputer.compute(datasets, MEASURER);
+
+        assertEquals(20, cache.getHeight(0));
+        assertEquals(2, cache.getVisibleCount(0));
+        assertEquals(3, cache.getItemCount(0));
+        assertEquals(0, cache.getHeight(1));
+        assertEquals(0, cache.getVisibleCount(1));
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.xesam.android.views.tag;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TagListDiffTest {
+    // 第一个字符相同表示同一个数据，整个字符串相同表示内容相同
+    private static final TagListDiff.ItemCallback<String> CALLBACK = new TagListDiff.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+            return oldItem.charAt(0) == newItem.charAt(0);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public Object getItemKey(String item) {
+            return item.charAt(0);
+        }
+    };
+
+    // 按通知依次修改旧列表，最后应该得到新列表
+    private static class ApplyingObserver extends TagDataObserver {
+        final List<String> items;
+        final List<String> target;
+        final List<String> events = new ArrayList<>();
+
+        ApplyingObserver(List<String> oldList, List<String> newList) {
+            items = new ArrayList<>(oldList);
+            target = newList;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            events.add("change " + positionStart + " " + itemCount);
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                assertTrue(CALLBACK.areItemsTheSame(items.get(i), target.get(i)));
+                items.set(i, target.get(i));
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            events.add("insert " + positionStart + " " + itemCount);
+            items.addAll(positionStart, target.subList(positionStart, positionStart + itemCount));
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            events.add("remove " + positionStart + " " + itemCount);
+            items.subList(positionStart, positionStart + itemCount).clear();
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            events.add("move " + fromPosition + " " + toPosition);
+            items.add(toPosition, items.remove(fromPosition));
+        }
+    }
+
+    @Test
+    public void dispatch_coalescesRangesAndDetectsMoves() {
+        List<String> oldList = Arrays.asList("a", "b", "c", "d", "e");
+        List<String> newList = Arrays.asList("a", "x", "y", "c", "e", "b2");
+        ApplyingObserver observer = new ApplyingObserver(oldList, newList);
+        TagListDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(observer);
+
+        assertEquals(newList, observer.items);
+        assertEquals(Arrays.asList("remove 3 1", "move 1 3", "insert 1 2", "change 5 1"), observer.events);
+    }
+
+    @Test
+    public void dispatch_randomListsProduceNewList() {
+        Random random = new Random(42);
+        String keys = "abcdefghijklmnopqrstuvwxyz";
+        for (int round = 0; round < 500; round++) {
+            List<String> oldList = randomList(random, keys);
+            List<String> newList = randomList(random, keys);
+            ApplyingObserver observer = new ApplyingObserver(oldList, newList);
+            TagListDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(observer);
+            assertEquals(newList, observer.items);
+        }
+    }
+
+    @Test
+    public void dispatch_duplicateKeysProduceNewList() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            List<String> oldList = randomDuplicateList(random);
+            List<String> newList = randomDuplicateList(random);
+            ApplyingObserver observer = new ApplyingObserver(oldList, newList);
+            TagListDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(observer);
+            assertEquals(newList, observer.items);
+        }
+    }
+
+    // 只有几种 key 的数据，同一个 key 会出现多次
+    private static List<String> randomDuplicateList(Random random) {
+        int size = random.nextInt(30);
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add((char) ('a' + random.nextInt(4)) + (random.nextInt(4) == 0 ? "2" : ""));
+        }
+        return list;
+    }
+
+    // 不重复的数据，内容随机带上版本号
+    private static List<String> randomList(Random random, String keys) {
+        List<Character> chars = new ArrayList<>();
+        for (int i = 0; i < keys.length(); i++) {
+            chars.add(keys.charAt(i));
+        }
+        Collections.shuffle(chars, random);
+        int size = random.nextInt(keys.length());
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(chars.get(i) + (random.nextInt(4) == 0 ? "2" : ""));
+        }
+        return list;
+    }
+}
@@ -19,8 +19,8 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.github.xesam.android.views.tag.OnTagClickListener;
-import com.github.xesam.android.views.tag.TagAdapter;
 import com.github.xesam.android.views.tag.TagViewGroup;
+import com.github.xesam.android.views.tag.TextTagAdapter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -144,7 +144,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void setupTagAdapter(TagViewGroup tagViewGroup, List<String> dataList, final boolean showMore) {
-        tagViewGroup.setAdapter(new TagAdapter<String>() {
+        tagViewGroup.setAdapter(new TextTagAdapter<String>() {
             @Override
             public int getCount() {
                 return dataList.size();
@@ -156,9 +156,8 @@ public class MainActivity extends AppCompatActivity {
             }
 
             @Override
-            protected View getView(int position, ViewGroup parent) {
+            protected TextView onCreateTextView(ViewGroup parent) {
                 TextView textView = new TextView(MainActivity.this);
-                textView.setText(getItem(position));
                 textView.setPadding(20, 10, 20, 10);
                 textView.setBackgroundResource(R.drawable.tag_background);
                 textView.setTextColor(Color.WHITE);
@@ -10,13 +10,16 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.github.xesam.android.views.tag.OnTagClickListener;
-import com.github.xesam.android.views.tag.TagAdapter;
+import com.github.xesam.android.views.tag.ListTagAdapter;
 import com.github.xesam.android.views.tag.TagViewGroup;
+import com.github.xesam.android.views.tag.TagViewPool;
 
 import java.util.List;
 
 public class RecyclerViewAdapter extends RecyclerView.Adapter<RecyclerViewAdapter.ViewHolder> {
     private List<ListItem> mDataList;
+    // 所有列表项共享同一个标签回收池
+    private final TagViewPool mTagViewPool = new TagViewPool();
 
     public RecyclerViewAdapter(List<ListItem> dataList) {
         this.mDataList = dataList;
@@ -26,7 +29,7 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter<RecyclerViewAdapte
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_recyclerview, parent, false);
-        return new ViewHolder(view);
+        return new ViewHolder(view, mTagViewPool);
     }
 
     @Override
@@ -43,50 +46,50 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter<RecyclerViewAdapte
     static class ViewHolder extends RecyclerView.ViewHolder {
         private TextView titleText;
         private TagViewGroup tagViewGroup;
+        // 适配器和点击监听只在创建 ViewHolder 时生成一次，绑定时只替换数据
+        private final ListTagAdapter<String> tagAdapter = new ListTagAdapter<String>() {
+            @Override
+            protected View getView(int position, ViewGroup parent) {
+                TextView textView = new TextView(parent.getContext());
+                textView.setText(getItem(position));
+                textView.setPadding(20, 10, 20, 10);
+                textView.setBackgroundResource(R.drawable.tag_background);
+                return textView;
+            }
+
+            @Override
+            protected View getView(int position, View convertView, ViewGroup parent) {
+                if (convertView == null) {
+                    return getView(position, parent);
+                }
+                ((TextView) convertView).setText(getItem(position));
+                return convertView;
+            }
+        };
 
-        public ViewHolder(@NonNull View itemView) {
+        public ViewHolder(@NonNull View itemView, TagViewPool tagViewPool) {
             super(itemView);
             titleText = itemView.findViewById(R.id.item_title);
             tagViewGroup = itemView.findViewById(R.id.item_tag_view_group);
-        }
-
-        public void bind(ListItem item) {
-            titleText.setText(item.getTitle());
-            
-            // 设置 TagViewGroup 的适配器
-            tagViewGroup.setAdapter(new TagAdapter<String>() {
-                @Override
-                public int getCount() {
-                    return item.getTags().size();
-                }
-
-                @Override
-                public String getItem(int position) {
-                    return item.getTags().get(position);
-                }
-
-                @Override
-                protected View getView(int position, ViewGroup parent) {
-                    TextView textView = new TextView(parent.getContext());
-                    textView.setText(getItem(position));
-                    textView.setPadding(20, 10, 20, 10);
-                    textView.setBackgroundResource(R.drawable.tag_background);
-                    return textView;
-                }
-
-                @Override
-                protected View getMoreView(ViewGroup parent) {
-                    return null; // 在列表项中不显示更多按钮
-                }
-            });
+            tagViewGroup.setRecycledViewPool(tagViewPool);
+            tagViewGroup.setAdapter(tagAdapter);
 
             // 设置标签点击事件
             tagViewGroup.setOnTagClickListener(new OnTagClickListener() {
                 @Override
                 public void onTagClick(View view, int position) {
-                    Toast.makeText(itemView.getContext(), "点击了标签: " + item.getTags().get(position), Toast.LENGTH_SHORT).show();
+                    Toast.makeText(itemView.getContext(), "点击了标签: " + tagAdapter.getItem(position), Toast.LENGTH_SHORT).show();
                 }
             });
         }
+
+        public void bind(ListItem item) {
+            titleText.setText(item.getTitle());
+
+            // 只替换数据，已经创建的标签原地重新绑定
+            tagAdapter.setItems(item.getTags());
+            // 列表项被预取时提前完成标签的创建和测量
+            tagViewGroup.prefetch();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,217 @@
+package com.github.xesam.android.views.tag.benchmark;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.xesam.android.views.tag.ListTagAdapter;
+import com.github.xesam.android.views.tag.TagViewGroup;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// TagViewGroup 测量、布局、设置适配器以及重新绑定的基准测试
+// 结果中的 allocationCount 即每次迭代（一帧）的内存分配次数
+@RunWith(Parameterized.class)
+public class TagViewGroupBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int NARROW_WIDTH = 720;
+
+    private final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    // Parameterized 运行器不支持 @UiThreadTest，测试方法（包括 @Before）由 MainThreadRule 放到主线程中执行
+    @Rule
+    public RuleChain rules = RuleChain.outerRule(benchmarkRule).around(new MainThreadRule());
+
+    @Parameterized.Parameters(name = "tags={0},maxLines={1},moreView={2}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (int tagCount : new int[]{10, 100, 1000}) {
+            for (int maxLines : new int[]{2, Integer.MAX_VALUE}) {
+                parameters.add(new Object[]{tagCount, maxLines, true});
+                parameters.add(new Object[]{tagCount, maxLines, false});
+            }
+        }
+        return parameters;
+    }
+
+    private final int mTagCount;
+    private final int mMaxLines;
+    private final boolean mMoreView;
+
+    private TagViewGroup mTagViewGroup;
+    private BenchmarkAdapter mAdapter;
+
+    public TagViewGroupBenchmark(int tagCount, int maxLines, boolean moreView) {
+        mTagCount = tagCount;
+        mMaxLines = maxLines;
+        mMoreView = moreView;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < mTagCount; i++) {
+            // 长度不一的标签，让换行位置分布得更接近真实数据
+            StringBuilder builder = new StringBuilder("标签").append(i);
+            for (int j = 0; j < i % 5; j++) {
+                builder.append("文字");
+            }
+            tags.add(builder.toString());
+        }
+        mAdapter = new BenchmarkAdapter(tags, mMoreView);
+        mTagViewGroup = new TagViewGroup(context);
+        mTagViewGroup.setMaxLines(mMaxLines);
+        mTagViewGroup.setHorizontalSpacing(16);
+        mTagViewGroup.setVerticalSpacing(16);
+    }
+
+    // 约束和数据都没有变化时的一帧，应该直接命中换行缓存
+    @Test
+    public void measureLayoutCached() {
+        mTagViewGroup.setAdapter(mAdapter);
+        measureAndLayout(WIDTH);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            mTagViewGroup.forceLayout();
+            measureAndLayout(WIDTH);
+        }
+    }
+
+    // 宽度在两个值之间交替，每一帧都需要重新换行
+    @Test
+    public void measureLayoutWidthChanged() {
+        mTagViewGroup.setAdapter(mAdapter);
+        measureAndLayout(WIDTH);
+        BenchmarkState state = benchmarkRule.getState();
+        boolean narrow = false;
+        while (state.keepRunning()) {
+            narrow = !narrow;
+            measureAndLayout(narrow ? NARROW_WIDTH : WIDTH);
+        }
+    }
+
+    // 只测量，不布局
+    @Test
+    public void measure() {
+        mTagViewGroup.setAdapter(mAdapter);
+        measureAndLayout(WIDTH);
+        BenchmarkState state = benchmarkRule.getState();
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        while (state.keepRunning()) {
+            mTagViewGroup.forceLayout();
+            mTagViewGroup.measure(widthSpec, heightSpec);
+        }
+    }
+
+    // 设置适配器后的首帧，标签视图从回收池中获取
+    @Test
+    public void setAdapter() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            mTagViewGroup.setAdapter(mAdapter);
+            measureAndLayout(WIDTH);
+            state.pauseTiming();
+            mTagViewGroup.setAdapter(null);
+            state.resumeTiming();
+        }
+    }
+
+    // 整个数据集变化后原地重新绑定标签的一帧
+    @Test
+    public void rebind() {
+        mTagViewGroup.setAdapter(mAdapter);
+        measureAndLayout(WIDTH);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            mAdapter.notifyDataSetChanged();
+            measureAndLayout(WIDTH);
+        }
+    }
+
+    private void measureAndLayout(int width) {
+        mTagViewGroup.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        mTagViewGroup.layout(0, 0, mTagViewGroup.getMeasuredWidth(), mTagViewGroup.getMeasuredHeight());
+    }
+
+    // 在主线程中执行测试，测试中抛出的异常在测试线程中重新抛出
+    private static class MainThreadRule implements TestRule {
+        @Override
+        public Statement apply(final Statement base, Description description) {
+            return new Statement() {
+                @Override
+                public void evaluate() throws Throwable {
+                    final Throwable[] error = new Throwable[1];
+                    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                base.evaluate();
+                            } catch (Throwable t) {
+                                error[0] = t;
+                            }
+                        }
+                    });
+                    if (error[0] != null) {
+                        throw error[0];
+                    }
+                }
+            };
+        }
+    }
+
+    private static class BenchmarkAdapter extends ListTagAdapter<String> {
+        private final boolean mMoreView;
+
+        BenchmarkAdapter(List<String> items, boolean moreView) {
+            super(items);
+            mMoreView = moreView;
+        }
+
+        @Override
+        protected View getView(int position, ViewGroup parent) {
+            TextView textView = new TextView(parent.getContext());
+            textView.setPadding(20, 10, 20, 10);
+            textView.setText(getItem(position));
+            return textView;
+        }
+
+        @Override
+        protected View getView(int position, View convertView, ViewGroup parent) {
+            if (convertView == null) {
+                return getView(position, parent);
+            }
+            ((TextView) convertView).setText(getItem(position));
+            return convertView;
+        }
+
+        @Override
+        protected View getMoreView(ViewGroup parent) {
+            if (!mMoreView) {
+                return null;
+            }
+            TextView textView = new TextView(parent.getContext());
+            textView.setPadding(20, 10, 20, 10);
+            textView.setText("更多");
+            return textView;
+        }
+    }
+}